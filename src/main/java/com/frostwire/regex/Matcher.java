@@ -30,10 +30,13 @@ public class Matcher {
 
     private com.google.re2j.Matcher matcher;
     private Pattern parentPattern;
+    private CharSequence input;
+    private int nextFrom; // where find() continues, when using the literal prefix of the pattern
 
     Matcher(Pattern parentPattern, CharSequence input) {
         this.parentPattern = parentPattern;
         this.matcher = parentPattern.pattern().matcher(input);
+        this.input = input;
     }
 
     /**
@@ -61,6 +64,7 @@ public class Matcher {
      */
     public Matcher reset() {
         matcher.reset();
+        nextFrom = 0;
         return this;
     }
 
@@ -78,9 +82,21 @@ public class Matcher {
      */
     public Matcher reset(CharSequence input) {
         matcher.reset(input);
+        this.input = input;
+        nextFrom = 0;
         return this;
     }
 
+    /**
+     * Returns the character sequence this matcher is matching against,
+     * to read the matched text by offsets without creating strings.
+     *
+     * @return the input sequence
+     */
+    public CharSequence input() {
+        return input;
+    }
+
     /**
      * Attempts to match the entire region against the pattern.
      *
@@ -91,7 +107,7 @@ public class Matcher {
      * matches this matcher's pattern
      */
     public boolean matches() {
-        return matcher.matches();
+        return matcher.matches() ? found() : fail();
     }
 
     /**
@@ -109,7 +125,13 @@ public class Matcher {
      * @return
      */
     public boolean find() {
-        return matcher.find();
+        if (!parentPattern.isLiteralPrefixSearch()) {
+            return matcher.find();
+        }
+
+        // no match can start before the next occurrence of the prefix
+        int start = nextFrom <= input.length() ? parentPattern.indexOfLiteralPrefix(input, nextFrom) : -1;
+        return start != -1 ? find(start) : fail();
     }
 
     /**
@@ -128,7 +150,7 @@ public class Matcher {
      * is greater than the length of the input sequence.
      */
     public boolean find(int start) {
-        return matcher.find(start);
+        return matcher.find(start) ? found() : fail();
     }
 
     /**
@@ -146,7 +168,28 @@ public class Matcher {
      * matches this matcher's pattern
      */
     public boolean lookingAt() {
-        return matcher.lookingAt();
+        return matcher.lookingAt() ? found() : fail();
+    }
+
+    /**
+     * Keeps where the next find() continues, the same way re2j does: after the
+     * match, or one character after it if empty.
+     *
+     * @return true
+     */
+    private boolean found() {
+        nextFrom = matcher.end() == matcher.start() ? matcher.end() + 1 : matcher.end();
+        return true;
+    }
+
+    /**
+     * After a failed match the next find() starts over, as in re2j.
+     *
+     * @return false
+     */
+    private boolean fail() {
+        nextFrom = 0;
+        return false;
     }
 
     /**
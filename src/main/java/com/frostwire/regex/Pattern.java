@@ -44,6 +44,9 @@ public class Pattern {
     private String namedPattern;
     private List<String> groupNames;
     private Map<String,List<GroupInfo> > groupInfo;
+    private String literalPrefix;
+    private boolean literalPrefixFoldCase;
+    private int literalPrefixAnchor;
 
     /**
      * Constructs a named pattern with the given regular expression and flags
@@ -68,7 +71,10 @@ public class Pattern {
         // because the pattern relies on group info to determine the indexes
         // of named back-references
         groupInfo = extractGroupInfo(regex);
+        // eagerly built, so that a pattern can be shared by threads (see PatternCache)
+        groupNames = new ArrayList<String>(groupInfo.keySet());
         pattern = buildStandardPattern(regex, flags);
+        extractLiteralPrefix(regex, flags);
     }
 
     /**
@@ -183,9 +189,6 @@ public class Pattern {
      * @return the list of names
      */
     public List<String> groupNames() {
-        if (groupNames == null) {
-            groupNames = new ArrayList<String>(groupInfo.keySet());
-        }
         return groupNames;
     }
 
@@ -537,6 +540,209 @@ public class Pattern {
         return com.google.re2j.Pattern.compile(s.toString(), flags);
     }
 
+    /**
+     * Returns the literal text every match starts with, or null if there is none.
+     * With case insensitive matching the letters of the prefix are lower case.
+     *
+     * @return the literal prefix
+     */
+    public String literalPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * Finds the first offset, starting at the given one, where the literal prefix
+     * occurs, that is where the next match could start. This is much faster than
+     * running the automaton, in particular for case insensitive patterns, where
+     * re2j doesn't skip to the prefix by itself.
+     *
+     * @param s the input sequence
+     * @param from the offset to start at
+     * @return the offset of the prefix or -1 if not found
+     */
+    int indexOfLiteralPrefix(CharSequence s, int from) {
+        String prefix = literalPrefix;
+        if (!literalPrefixFoldCase) {
+            if (s instanceof String) {
+                return ((String) s).indexOf(prefix, from);
+            }
+            if (s instanceof StringBuilder) {
+                return ((StringBuilder) s).indexOf(prefix, from);
+            }
+        }
+
+        int n = prefix.length();
+        int last = s.length() - n;
+        int k = literalPrefixAnchor;
+        if (k != -1 && s instanceof String) {
+            // jump with the intrinsic indexOf to the first character without case
+            String str = (String) s;
+            char anchor = prefix.charAt(k);
+            int a = from + k;
+            while ((a = str.indexOf(anchor, a)) != -1 && a - k <= last) {
+                if (regionFoldEquals(s, a - k, prefix)) {
+                    return a - k;
+                }
+                a++;
+            }
+            return -1;
+        }
+
+        char first = prefix.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (foldEquals(s.charAt(i), first) && regionFoldEquals(s, i, prefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the literal prefix is used to skip the text that can't match,
+     * only done for case insensitive patterns, re2j already does it for the others.
+     */
+    boolean isLiteralPrefixSearch() {
+        return literalPrefix != null && literalPrefixFoldCase;
+    }
+
+    private boolean regionFoldEquals(CharSequence s, int offset, String prefix) {
+        for (int j = 0; j < prefix.length(); j++) {
+            if (!foldEquals(s.charAt(offset + j), prefix.charAt(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean foldEquals(char c, char p) {
+        if (c == p) {
+            return true;
+        }
+        if (literalPrefixFoldCase && p >= 'a' && p <= 'z') {
+            // the non ASCII characters are the ones re2j folds to k and s
+            return c == p - 32 || (p == 'k' && c == '\u212A') || (p == 's' && c == '\u017F');
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the literal text at the start of the expression, after the flags,
+     * up to the first construct that isn't a plain character. There is no prefix
+     * when the expression has top level alternatives.
+     *
+     * @param regex the expression
+     * @param flags the re2j match flags
+     */
+    private void extractLiteralPrefix(String regex, int flags) {
+        boolean foldCase = (flags & com.google.re2j.Pattern.CASE_INSENSITIVE) != 0;
+        int n = regex.length();
+        int i = 0;
+
+        // leading flag groups, like (?is)
+        while (regex.startsWith("(?", i)) {
+            int close = regex.indexOf(')', i);
+            if (close == -1) {
+                return;
+            }
+            boolean negated = false;
+            boolean onlyFlags = true;
+            for (int j = i + 2; j < close && onlyFlags; j++) {
+                char c = regex.charAt(j);
+                if (c == '-') {
+                    negated = true;
+                } else if (c == 'i') {
+                    foldCase = !negated;
+                } else if (c != 's' && c != 'm' && c != 'U') {
+                    onlyFlags = false;
+                }
+            }
+            if (!onlyFlags || close == i + 2) {
+                break;
+            }
+            i = close + 1;
+        }
+
+        if (hasTopLevelAlternation(regex)) {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        while (i < n) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            if (c == '\\') {
+                if (next == n || Character.isLetterOrDigit(regex.charAt(next))) {
+                    break; // a class like \d or \w, or some other escape
+                }
+                c = regex.charAt(next++);
+            } else if (".[]()*+?{}|^$".indexOf(c) != -1) {
+                break;
+            }
+            if (next < n && "*?{".indexOf(regex.charAt(next)) != -1) {
+                break; // the character is optional
+            }
+            if (foldCase && c > 127) {
+                break;
+            }
+            sb.append(foldCase && c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+            if (next < n && regex.charAt(next) == '+') {
+                break;
+            }
+            i = next;
+        }
+
+        if (sb.length() >= 2) {
+            literalPrefix = sb.toString();
+            literalPrefixFoldCase = foldCase;
+            literalPrefixAnchor = -1;
+            for (int j = 0; j < literalPrefix.length() && literalPrefixAnchor == -1; j++) {
+                char c = literalPrefix.charAt(j);
+                if (!foldCase || c < 'a' || c > 'z') {
+                    literalPrefixAnchor = j;
+                }
+            }
+        }
+    }
+
+    static private boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (regex.startsWith("Q", i + 1)) {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end == -1) {
+                        return false;
+                    }
+                    i = end + 1;
+                } else {
+                    i++;
+                }
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+                // a ] right after [ or [^ is a literal
+                if (regex.startsWith("^", i + 1)) {
+                    i++;
+                }
+                if (regex.startsWith("]", i + 1)) {
+                    i++;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
      * (non-Javadoc)
      * @see java.lang.Object#equals(java.lang.Object)
@@ -0,0 +1,119 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.regex;
+
+import com.frostwire.logging.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared compiled patterns, for the expressions built at runtime or compiled
+ * in a loop, where the named groups parsing and the re2j compilation would be
+ * paid on every use.
+ * <p/>
+ * The cache is bounded, once full it's cleared and the patterns in use are
+ * compiled again on demand. Compiled patterns can be shared by threads, each
+ * use needs its own {@link Matcher}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class PatternCache {
+
+    private static final Logger LOG = Logger.getLogger(PatternCache.class);
+
+    private static final int MAX_SIZE = 256;
+
+    private static final ConcurrentMap<Key, Pattern> patterns = new ConcurrentHashMap<Key, Pattern>();
+
+    private PatternCache() {
+    }
+
+    public static Pattern get(String regex) {
+        return get(regex, 0);
+    }
+
+    /**
+     * Returns the compiled pattern for the expression and flags, compiling it
+     * the first time.
+     */
+    public static Pattern get(String regex, int flags) {
+        Key key = new Key(regex, flags);
+        Pattern p = patterns.get(key);
+        if (p == null) {
+            p = Pattern.compile(regex, flags);
+            if (patterns.size() >= MAX_SIZE) {
+                patterns.clear();
+            }
+            Pattern current = patterns.putIfAbsent(key, p);
+            if (current != null) {
+                p = current;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Compiles the expressions and runs them once, so that the first real use doesn't
+     * pay for the compilation and the cold matching code. Meant to be called at startup,
+     * from a background thread.
+     */
+    public static void precompile(String... regexes) {
+        for (String regex : regexes) {
+            try {
+                get(regex).matcher("").find();
+            } catch (Throwable e) {
+                LOG.warn("Error precompiling regex: " + regex, e);
+            }
+        }
+    }
+
+    public static int size() {
+        return patterns.size();
+    }
+
+    public static void clear() {
+        patterns.clear();
+    }
+
+    private static final class Key {
+
+        private final String regex;
+        private final int flags;
+
+        public Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return flags == k.flags && regex.equals(k.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+    }
+}
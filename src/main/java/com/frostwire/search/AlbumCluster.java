@@ -19,15 +19,27 @@ package com.frostwire.search;
 
 import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledAlbumSearchResult;
+import com.frostwire.search.torrent.TorrentCrawledResults;
 import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentMetadata;
 import com.frostwire.util.MimeDetector;
-import org.apache.commons.io.FilenameUtils;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 /**
  * To be used only inside PerformersHelper and only for torrents search related functions.
  * Private API.
+ * <p/>
+ * Detects the audio albums of a torrent in one pass over its files. The directories
+ * are kept in a trie of path segments, looked up in place in the file paths, and the
+ * audio files are told by their extension with {@link MimeDetector}, without creating
+ * strings for either. Only the rows of the audio files are kept for every directory.
+ * Every directory with at least {@link #ALBUM_SIZE_THRESHOLD} audio files is an album,
+ * with the files of disc subdirectories (CD1, Disc 2...) counted in their parent.
  *
  * @author gubatron
  * @author aldenml
@@ -36,87 +48,284 @@ public class AlbumCluster {
 
     private static final int ALBUM_SIZE_THRESHOLD = 4;
 
+    private static final String[] DISC_WORDS = {"cd", "dvd", "disc", "disk"};
+
+    public LinkedList<TorrentCrawledAlbumSearchResult> detect(TorrentCrawlableSearchResult parent, List<? extends TorrentItemSearchResult> results) {
+        Trie trie = new Trie();
+        for (int i = 0; i < results.size(); i++) {
+            TorrentItemSearchResult sr = results.get(i);
+            trie.add(sr.getFilePath(), i, sr.getSize());
+        }
+
+        LinkedList<TorrentCrawledAlbumSearchResult> albums = new LinkedList<TorrentCrawledAlbumSearchResult>();
+        for (Node album : trie.albums()) {
+            List<TorrentItemSearchResult> items = new ArrayList<TorrentItemSearchResult>(album.count);
+            for (int j = 0; j < album.count; j++) {
+                items.add(results.get(album.rows[j]));
+            }
+            String[] artistAlbum = artistAlbum(album);
+            albums.add(new TorrentCrawledAlbumSearchResult(parent, artistAlbum[0], artistAlbum[1], items, album.bytes));
+        }
+
+        return albums;
+    }
+
     /**
-     * Try to extract album and artist from path.
-     *
-     * @param
-     * @return
+     * Detects the albums reading the paths straight from the metadata, so that no result
+     * is created for the files, and only the rows in the list of the audio files are
+     * kept. The files of an album are created on demand from those rows.
      */
-    /*public static final Pair<String, String> albumArtistFromPath(String filepath, String defaultAlbum, String defaultArtist) {
-        String album = defaultAlbum;
-        String artist = defaultArtist;
+    public LinkedList<TorrentCrawledAlbumSearchResult> detect(TorrentCrawledResults files) {
+        Trie trie = new Trie();
 
-        if (!filepath.contains("/")) { // does not contain directory parts
-            return ImmutablePair.of(album, artist);
+        int row = 0;
+        Iterator<TorrentMetadata.FileEntry> it = files.getMetadata().files();
+        while (row < files.size() && it.hasNext()) {
+            TorrentMetadata.FileEntry f = it.next();
+            if (f.getIndex() == files.getFileIndex(row)) {
+                trie.add(f.getPath(), row, f.getSize());
+                row++;
+            }
         }
-        ArrayList<String> dirs = new ArrayList<String>(Arrays.asList(filepath.split("/")));
 
-        if (dirs.get(0).equals("")) {
-            dirs.remove(0);
+        LinkedList<TorrentCrawledAlbumSearchResult> albums = new LinkedList<TorrentCrawledAlbumSearchResult>();
+        for (Node album : trie.albums()) {
+            String[] artistAlbum = artistAlbum(album);
+            albums.add(new TorrentCrawledAlbumSearchResult(files.getParent(), artistAlbum[0], artistAlbum[1], files.select(Arrays.copyOf(album.rows, album.count)), album.bytes));
         }
 
-        if (dirs.size() > 0) {
-            dirs.remove(dirs.size() - 1);
+        return albums;
+    }
+
+    /**
+     * Extracts the artist and album from the directories, assuming %artist%/%album%/file
+     * or %artist% - %album%/file, where a year in place of the artist is skipped, as in
+     * %artist%/%year% - %album%/file.
+     */
+    static String[] artistAlbum(Node node) {
+        String album = node.segment.trim();
+        String artist = "";
+
+        int sep = album.indexOf(" - ");
+        if (sep != -1 && !isYear(album.substring(0, sep).trim())) {
+            artist = album.substring(0, sep).trim();
+            album = album.substring(sep + 3).trim();
+        } else {
+            if (sep != -1) {
+                album = album.substring(sep + 3).trim();
+            }
+            if (node.parent != null && node.parent.segment != null) {
+                artist = node.parent.segment.trim();
+                int psep = artist.indexOf(" - ");
+                if (psep != -1) {
+                    // as in "Artist - Discography"
+                    artist = artist.substring(0, psep).trim();
+                }
+            }
         }
 
-        // strip disc subdirectory from list
-        if (dirs.size() > 0) {
-            String last = dirs.get(dirs.size() - 1);
-            if (last.matches("(?is)(^|\\s)(CD|DVD|Disc)\\s*\\d+(\\s|$)")) {
-                dirs.remove(dirs.size() - 1);
+        return new String[]{artist, album};
+    }
+
+    /**
+     * Tells if the segment has a disc word (cd, dvd, disc, disk) at the start or after a
+     * space, followed by an optional space and a number, and then the end or a space.
+     */
+    static boolean isDisc(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (i > start && !Character.isWhitespace(s.charAt(i - 1))) {
+                continue;
+            }
+            for (String word : DISC_WORDS) {
+                int j = i + word.length();
+                if (j > end || !s.regionMatches(true, i, word, 0, word.length())) {
+                    continue;
+                }
+                while (j < end && Character.isWhitespace(s.charAt(j))) {
+                    j++;
+                }
+                int digits = j;
+                while (j < end && Character.isDigit(s.charAt(j))) {
+                    j++;
+                }
+                if (j > digits && (j == end || Character.isWhitespace(s.charAt(j)))) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
 
-        if (dirs.size() > 0) {
-            // for clustering assume %artist%/%album%/file or %artist% - %album%/file
-            album = dirs.get(dirs.size() - 1);
-            if (album.contains(" - ")) {
-                String[] parts = album.split(" - ");
-                artist = parts[0];
-                album = parts[1];
-            } else if (dirs.size() > 1) {
-                artist = dirs.get(dirs.size() - 2);
+    private static boolean isYear(String s) {
+        if (s.length() != 4) {
+            return false;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
             }
         }
+        return s.charAt(0) == '1' || s.charAt(0) == '2';
+    }
 
-        return ImmutablePair.of(album, artist);
-    }*/
+    /**
+     * The directories of the audio files, with the rows of the files of each
+     * candidate album.
+     */
+    private static final class Trie {
 
-    public LinkedList<TorrentCrawledAlbumSearchResult> detect(TorrentCrawlableSearchResult parent, List<? extends TorrentItemSearchResult> results) {
-        LinkedList<TorrentCrawledAlbumSearchResult> albums = new LinkedList<TorrentCrawledAlbumSearchResult>();
+        private final Node root = new Node(null, null);
+        private final List<Node> candidates = new ArrayList<Node>();
 
-        Map<String, LinkedList<TorrentItemSearchResult>> dirs = new HashMap<String, LinkedList<TorrentItemSearchResult>>();
+        // the files of a directory usually come one after the other
+        private Node lastDir;
+        private String lastPath;
+        private int lastDirEnd = -1;
 
-        for (TorrentItemSearchResult sr : results) {
-            String path = sr.getFilePath();
-            String dir = FilenameUtils.getPathNoEndSeparator(path);
+        void add(String path, int row, long size) {
+            if (path == null || MimeDetector.getCategoryFromPath(path) != MimeDetector.Category.AUDIO) {
+                return;
+            }
+
+            int dirEnd = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+            if (dirEnd <= 0) {
+                return; // not in a directory
+            }
+
+            Node dir;
+            if (lastDir != null && dirEnd == lastDirEnd && path.regionMatches(0, lastPath, 0, dirEnd)) {
+                dir = lastDir;
+            } else {
+                dir = root.find(path, dirEnd);
+                lastDir = dir;
+                lastPath = path;
+                lastDirEnd = dirEnd;
+            }
 
-            if (!dirs.containsKey(dir)) {
-                dirs.put(dir, new LinkedList<TorrentItemSearchResult>());
+            // the discs of an album are the same album
+            Node album = dir.disc && dir.parent != root ? dir.parent : dir;
+            if (album.rows == null) {
+                candidates.add(album);
             }
+            album.add(row, size);
+        }
 
-            LinkedList<TorrentItemSearchResult> items = dirs.get(dir);
-            items.add(sr);
+        List<Node> albums() {
+            List<Node> albums = new ArrayList<Node>();
+            for (Node album : candidates) {
+                if (album.count >= ALBUM_SIZE_THRESHOLD) {
+                    albums.add(album);
+                }
+            }
+            return albums;
         }
+    }
 
-        for (Map.Entry<String, LinkedList<TorrentItemSearchResult>> kv : dirs.entrySet()) {
-            int numAudio = 0;
+    /**
+     * A directory of the trie. The children are in an open addressing table keyed
+     * by the hash of the segment, computed over the path, so that finding a child
+     * doesn't need the segment as a string.
+     */
+    static final class Node {
+
+        final Node parent;
+        final String segment;
+        final boolean disc;
+
+        int[] rows; // of the audio files, in the list of results
+        int count;
+        long bytes; // of the audio files
+
+        private Node[] children;
+        private int[] hashes;
+        private int size;
+
+        Node(Node parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+            this.disc = segment != null && isDisc(segment, 0, segment.length());
+        }
+
+        void add(int row, long size) {
+            if (rows == null) {
+                rows = new int[ALBUM_SIZE_THRESHOLD];
+            } else if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = row;
+            bytes += size;
+        }
 
-            for (TorrentItemSearchResult sr : kv.getValue()) {
-                String mime = MimeDetector.getMimeType(sr.getFilePath());
-                if (mime.startsWith("audio")) {
-                    numAudio++;
+        /**
+         * Returns the node of the directory at path[0, end), creating the missing ones.
+         */
+        Node find(String path, int end) {
+            Node node = this;
+            int start = 0;
+            while (start < end) {
+                int sep = start;
+                while (sep < end && path.charAt(sep) != '/' && path.charAt(sep) != '\\') {
+                    sep++;
                 }
+                if (sep > start) {
+                    node = node.child(path, start, sep);
+                }
+                start = sep + 1;
+            }
+            return node;
+        }
+
+        private Node child(String path, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + path.charAt(i);
+            }
+
+            if (children == null) {
+                children = new Node[4];
+                hashes = new int[4];
+            }
+
+            int mask = children.length - 1;
+            int i = h & mask;
+            Node c;
+            while ((c = children[i]) != null) {
+                if (hashes[i] == h && c.segment.length() == end - start && path.regionMatches(start, c.segment, 0, end - start)) {
+                    return c;
+                }
+                i = (i + 1) & mask;
             }
 
-//            if (numAudio >= ALBUM_SIZE_THRESHOLD) {
-//                Pair<String, String> p = albumArtistFromPath(kv.getKey(), "", "");
-//                TorrentCrawledAlbumSearchResult sr = new TorrentCrawledAlbumSearchResult(parent, p.getRight(), p.getLeft(), kv.getValue());
-//                System.out.println(sr);
-//                albums.add(sr);
-//            }
+            c = new Node(this, path.substring(start, end));
+            children[i] = c;
+            hashes[i] = h;
+            size++;
+
+            if (size * 4 > children.length * 3) {
+                resize();
+            }
+
+            return c;
         }
 
-        return albums;
+        private void resize() {
+            Node[] oldChildren = children;
+            int[] oldHashes = hashes;
+
+            children = new Node[oldChildren.length * 2];
+            hashes = new int[oldChildren.length * 2];
+
+            int mask = children.length - 1;
+            for (int j = 0; j < oldChildren.length; j++) {
+                if (oldChildren[j] != null) {
+                    int i = oldHashes[j] & mask;
+                    while (children[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    children[i] = oldChildren[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
     }
 }
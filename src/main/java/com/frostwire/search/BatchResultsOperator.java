@@ -0,0 +1,165 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the {@link SearchManagerSignal.Results} signals of each token, emitting
+ * one merged signal per token once the time window elapses or the given number of
+ * results is reached, whatever happens first.
+ * <p/>
+ * The pending results of a token are always emitted right before its
+ * {@link SearchManagerSignal.End} signal, other signals are passed through.
+ * <p/>
+ * Usage: {@code manager.observable().lift(new BatchResultsOperator(300, TimeUnit.MILLISECONDS, 100))}
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class BatchResultsOperator implements Observable.Operator<SearchManagerSignal, SearchManagerSignal> {
+
+    private final long window;
+    private final TimeUnit unit;
+    private final int maxSize;
+    private final Scheduler scheduler;
+
+    public BatchResultsOperator(long window, TimeUnit unit, int maxSize, Scheduler scheduler) {
+        if (window <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("Window and max size must be > 0");
+        }
+        this.window = window;
+        this.unit = unit;
+        this.maxSize = maxSize;
+        this.scheduler = scheduler;
+    }
+
+    public BatchResultsOperator(long window, TimeUnit unit, int maxSize) {
+        this(window, unit, maxSize, Schedulers.computation());
+    }
+
+    @Override
+    public Subscriber<? super SearchManagerSignal> call(Subscriber<? super SearchManagerSignal> child) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        child.add(worker);
+        return new BatchSubscriber(child, worker);
+    }
+
+    private final class BatchSubscriber extends Subscriber<SearchManagerSignal> {
+
+        private final Subscriber<? super SearchManagerSignal> child;
+        private final Scheduler.Worker worker;
+
+        // guarded by this, which also serializes the emissions to the child
+        private final Map<Long, List<SearchResult>> pending;
+        private boolean flushScheduled;
+        private boolean done;
+
+        public BatchSubscriber(Subscriber<? super SearchManagerSignal> child, Scheduler.Worker worker) {
+            super(child);
+            this.child = child;
+            this.worker = worker;
+            this.pending = new LinkedHashMap<Long, List<SearchResult>>();
+        }
+
+        @Override
+        public synchronized void onNext(SearchManagerSignal signal) {
+            if (done) {
+                return;
+            }
+
+            if (signal instanceof SearchManagerSignal.Results) {
+                List<SearchResult> list = pending.get(signal.token);
+                if (list == null) {
+                    list = new ArrayList<SearchResult>();
+                    pending.put(signal.token, list);
+                }
+                list.addAll(((SearchManagerSignal.Results) signal).elements);
+
+                if (list.size() >= maxSize) {
+                    flush(signal.token);
+                } else if (!flushScheduled) {
+                    flushScheduled = true;
+                    worker.schedule(new Action0() {
+                        @Override
+                        public void call() {
+                            flushAll();
+                        }
+                    }, window, unit);
+                }
+            } else {
+                if (signal instanceof SearchManagerSignal.End) {
+                    flush(signal.token);
+                }
+                child.onNext(signal);
+            }
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            if (!done) {
+                flushPending();
+                done = true;
+                child.onCompleted();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable e) {
+            if (!done) {
+                done = true;
+                pending.clear();
+                child.onError(e);
+            }
+        }
+
+        private synchronized void flushAll() {
+            flushScheduled = false;
+            if (!done) {
+                flushPending();
+            }
+        }
+
+        private void flushPending() {
+            Iterator<Map.Entry<Long, List<SearchResult>>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, List<SearchResult>> e = it.next();
+                it.remove();
+                child.onNext(new SearchManagerSignal.Results(e.getKey(), e.getValue()));
+            }
+        }
+
+        private void flush(long token) {
+            List<SearchResult> list = pending.remove(token);
+            if (list != null && !list.isEmpty()) {
+                child.onNext(new SearchManagerSignal.Results(token, list));
+            }
+        }
+    }
+}
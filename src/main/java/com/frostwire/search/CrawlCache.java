@@ -18,7 +18,11 @@
 package com.frostwire.search;
 
 /**
- * 
+ * Cache of crawled data, shared by all the crawling search performers.
+ * <p/>
+ * Implementations must be thread safe, the performers call it concurrently
+ * from the search threads without any external synchronization.
+ *
  * @author gubatron
  * @author aldenml
  *
@@ -20,10 +20,16 @@ package com.frostwire.search;
 
 import com.frostwire.logging.Logger;
 import com.frostwire.search.torrent.TorrentSearchResult;
-import org.apache.commons.lang3.Conversion;
+import com.frostwire.util.http.HttpClient;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author gubatron
@@ -34,17 +40,20 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final Logger LOG = Logger.getLogger(CrawlPagedWebSearchPerformer.class);
 
     private static final int DEFAULT_CRAWL_TIMEOUT = 10000; // 10 seconds.
-    private static final int FAILED_CRAWL_URL_CACHE_LIFETIME = 600000; // 10 minutes.
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT = 20000; // 20 seconds.
+    private static final int CRAWLED_RESULTS_PAGE_SIZE = 500;
 
-    private static CrawlCache cache = null;
+    private static final ConcurrentMap<String, Download> downloads = new ConcurrentHashMap<String, Download>();
+    private static final NegativeCrawlCache negativeCache = new NegativeCrawlCache();
+
+    private static volatile CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
 
-    private int numCrawls;
+    private final CrawlPlanner planner;
 
     public CrawlPagedWebSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int numCrawls) {
         super(domainName, token, keywords, timeout, pages);
-        this.numCrawls = numCrawls;
+        this.planner = new CrawlPlanner(numCrawls);
     }
 
     public static void setCache(CrawlCache cache) {
@@ -59,29 +68,29 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         CrawlPagedWebSearchPerformer.magnetDownloader = magnetDownloader;
     }
 
+    /**
+     * Crawls the best pending result, which is not necessarily the one passed in,
+     * while there is crawl budget left.
+     *
+     * @see CrawlPlanner
+     */
     @Override
     public void crawl(CrawlableSearchResult sr) {
-        if (numCrawls > 0) {
-            numCrawls--;
+        if (isStopped()) {
+            planner.cancel();
+            return;
+        }
+
+        // in case it didn't come through onResults
+        planner.offer(sr, getCrawlValue(sr));
 
+        sr = planner.next();
+        if (sr != null) {
             T obj = cast(sr);
             if (obj != null) {
 
                 String url = getCrawlUrl(obj);
 
-                byte[] failed = cacheGet("failed:" + url);
-                if (failed != null) {
-                    long failedWhen = array2long(failed);
-                    if ((System.currentTimeMillis() - failedWhen) < FAILED_CRAWL_URL_CACHE_LIFETIME) {
-                        //if the failed request is still fresh we stop
-                        LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
-                        onResults(Collections.EMPTY_LIST);
-                        return;
-                    } else {
-                        cacheRemove("failed:" + url);
-                    }
-                }
-
                 if (url != null) {
                     byte[] data = cacheGet(url);
 
@@ -95,14 +104,15 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                         }
                     }
 
-                    if (data == null) { // not a big deal about synchronization here
-                        LOG.debug("Downloading data for: " + url);
+                    if (data == null && negativeCache.isBlocked(url)) {
+                        // failed recently, or the host keeps failing
+                        LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit negative cache url: " + url);
+                        onResults(Collections.EMPTY_LIST);
+                        return;
+                    }
 
-                        if (url.startsWith("magnet")) {
-                            data = fetchMagnet(url);
-                        } else {
-                            data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
-                        }
+                    if (data == null) {
+                        data = download(url, sr);
 
                         //we put this here optimistically hoping this is actually
                         //valid data. if no data can be crawled from this we remove it
@@ -119,7 +129,6 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                             }
                         } else {
                             LOG.warn("Failed to download data: " + url);
-                            cachePut("failed:" + url, long2array(System.currentTimeMillis()));
                         }
                     }
 
@@ -127,7 +136,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                         if (data != null) {
                             List<? extends SearchResult> results = crawlResult(obj, data);
                             if (results != null) {
-                                onResults(results);
+                                onCrawledResults(results);
                             }
                         }
                     } catch (Throwable e) {
@@ -138,7 +147,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                     try {
                         List<? extends SearchResult> results = crawlResult(obj, null);
                         if (results != null) {
-                            onResults(results);
+                            onCrawledResults(results);
                         }
                     } catch (Throwable e) {
                         LOG.warn("Error creating crawled results from search result alone: " + obj.getDetailsUrl() + ", e=" + e.getMessage());//,e);
@@ -148,6 +157,122 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         }
     }
 
+    /**
+     * Sends the crawled results in pages, copying one page at a time, so that the results
+     * of lists that create them on demand, like the files of a huge torrent, are created
+     * once each and are never all alive at the same time.
+     */
+    private void onCrawledResults(List<? extends SearchResult> results) {
+        int n = results.size();
+        if (n == 0) {
+            onResults(results);
+            return;
+        }
+
+        for (int from = 0; from < n && !isStopped(); from += CRAWLED_RESULTS_PAGE_SIZE) {
+            int to = Math.min(n, from + CRAWLED_RESULTS_PAGE_SIZE);
+            onResults(new ArrayList<SearchResult>(results.subList(from, to)));
+        }
+    }
+
+    @Override
+    protected void onResults(List<? extends SearchResult> results) {
+        // candidates are offered before the results are sent, which schedules their crawls
+        if (results != null && !isStopped()) {
+            for (SearchResult sr : results) {
+                if (sr instanceof CrawlableSearchResult) {
+                    planner.offer((CrawlableSearchResult) sr, getCrawlValue((CrawlableSearchResult) sr));
+                }
+            }
+        }
+        super.onResults(results);
+    }
+
+    /**
+     * Expected value of crawling the result, the results with higher values are crawled
+     * first. By default it grows with the log of the seeds, plus a little for streamable
+     * files and known sizes. Results of the same value are crawled in the order they came.
+     */
+    protected double getCrawlValue(CrawlableSearchResult sr) {
+        double value = 0;
+
+        if (sr instanceof TorrentSearchResult) {
+            int seeds = ((TorrentSearchResult) sr).getSeeds();
+            if (seeds > 0) {
+                value += Math.log(1 + seeds) / Math.log(2);
+            }
+        }
+
+        if (sr instanceof FileSearchResult) {
+            FileSearchResult fsr = (FileSearchResult) sr;
+            if (sr instanceof StreamableSearchResult || (fsr.getFilename() != null && isStreamable(fsr.getFilename()))) {
+                value += 1;
+            }
+            if (fsr.getSize() > 0) {
+                value += 0.5;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Downloads the data of the crawl url, unless a download of the same url or the
+     * same infohash is already in flight, in which case it waits for that download
+     * and shares its bytes.
+     */
+    private byte[] download(String url, CrawlableSearchResult sr) {
+        String infohash = sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getHash() : null;
+        String hashKey = infohash != null && infohash.length() > 0 ? "infohash:" + infohash.toLowerCase(Locale.US) : null;
+
+        Download d = new Download();
+        Download current = downloads.putIfAbsent(url, d);
+        if (current != null) {
+            LOG.debug("Waiting for in flight download of: " + url);
+            return current.await();
+        }
+
+        byte[] data = null;
+        try {
+            current = hashKey != null ? downloads.putIfAbsent(hashKey, d) : null;
+            if (current != null) {
+                // same content coming from another url
+                LOG.debug("Waiting for in flight download of the same infohash: " + url);
+                data = current.await();
+            } else {
+                LOG.debug("Downloading data for: " + url);
+
+                NegativeCrawlCache.Failure failure = null;
+                if (url.startsWith("magnet")) {
+                    data = fetchMagnet(url);
+                    if (data == null) {
+                        failure = NegativeCrawlCache.Failure.TIMEOUT;
+                    }
+                } else {
+                    ErrorListener listener = new ErrorListener();
+                    data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT, listener);
+                    if (data == null) {
+                        failure = listener.error != null ? NegativeCrawlCache.Failure.fromThrowable(listener.error) : NegativeCrawlCache.Failure.OTHER;
+                    }
+                }
+
+                if (failure != null) {
+                    negativeCache.failed(url, failure);
+                } else {
+                    negativeCache.succeeded(url);
+                }
+            }
+        } finally {
+            d.complete(data);
+            downloads.remove(url, d);
+            if (hashKey != null) {
+                downloads.remove(hashKey, d);
+            }
+        }
+
+        return data;
+    }
+
     protected abstract String getCrawlUrl(T sr);
 
     protected abstract List<? extends SearchResult> crawlResult(T sr, byte[] data) throws Exception;
@@ -162,28 +287,21 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     }
 
     private byte[] cacheGet(String key) {
-        if (cache != null) {
-            synchronized (cache) {
-                return cache.get(key);
-            }
-        } else {
-            return null;
-        }
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        return cache != null ? cache.get(key) : null;
     }
 
     private void cachePut(String key, byte[] data) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                cache.put(key, data);
-            }
+            cache.put(key, data);
         }
     }
 
     private void cacheRemove(String key) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
         if (cache != null) {
-            synchronized (cache) {
-                cache.remove(key);
-            }
+            cache.remove(key);
         }
     }
 
@@ -198,32 +316,51 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         return null;
     }
 
-    private static byte[] long2array(long l) {
-        byte[] arr = new byte[Long.SIZE / Byte.SIZE];
-        Conversion.longToByteArray(l, 0, arr, 0, arr.length);
-        return arr;
+    public static void clearCache() {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        if (cache != null) {
+            cache.clear();
+        }
+        negativeCache.clear();
     }
 
-    private static long array2long(byte[] arr) {
-        return Conversion.byteArrayToLong(arr, 0, 0, 0, Long.SIZE / Byte.SIZE);
+    public static long getCacheSize() {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.cache;
+        return cache != null ? cache.size() : 0;
     }
 
+    private static final class Download {
 
-    public static void clearCache() {
-        if (cache != null) {
-            synchronized (cache) {
-                cache.clear();
+        // longest time a download can take, plus some slack
+        private static final long MAX_WAIT = DEFAULT_MAGNET_DOWNLOAD_TIMEOUT + 5000;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] data;
+
+        public void complete(byte[] data) {
+            this.data = data;
+            done.countDown();
+        }
+
+        public byte[] await() {
+            try {
+                if (done.await(MAX_WAIT, TimeUnit.MILLISECONDS)) {
+                    return data;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            return null;
         }
     }
 
-    public static long getCacheSize() {
-        long result = 0;
-        if (cache != null) {
-            synchronized (cache) {
-                result = cache.size();
-            }
+    private static final class ErrorListener extends HttpClient.HttpClientListenerAdapter {
+
+        private volatile Throwable error;
+
+        @Override
+        public void onError(HttpClient client, Throwable e) {
+            error = e;
         }
-        return result;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which results of a performer are crawled, within a budget of crawls.
+ * <p/>
+ * The candidates are offered as the results are sent, each one with its expected
+ * value. Every crawl request then takes the best candidate still pending, not the
+ * one it was scheduled for, so the budget goes to the best results seen so far
+ * instead of to the ones whose crawl tasks happened to run first. Candidates of
+ * the same value are crawled in the order they were offered.
+ * <p/>
+ * The budget is taken atomically, the crawl requests come from many threads.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class CrawlPlanner {
+
+    private final AtomicInteger budget;
+
+    // guarded by this
+    private final PriorityQueue<Candidate> pending;
+    private final Set<CrawlableSearchResult> offered;
+    private long seq;
+
+    public CrawlPlanner(int budget) {
+        this.budget = new AtomicInteger(budget);
+        this.pending = new PriorityQueue<Candidate>();
+        this.offered = Collections.newSetFromMap(new IdentityHashMap<CrawlableSearchResult, Boolean>());
+    }
+
+    /**
+     * Adds the result as a candidate, unless it was offered before.
+     */
+    public synchronized void offer(CrawlableSearchResult sr, double value) {
+        if (budget.get() > 0 && offered.add(sr)) {
+            pending.add(new Candidate(sr, value, seq++));
+        }
+    }
+
+    /**
+     * Takes the best pending candidate and a crawl of the budget. Returns null when
+     * there is nothing left to crawl or the budget is spent.
+     */
+    public CrawlableSearchResult next() {
+        Candidate c;
+        synchronized (this) {
+            c = pending.poll();
+        }
+
+        if (c == null) {
+            return null;
+        }
+
+        if (!acquire()) {
+            cancel();
+            return null;
+        }
+
+        return c.sr;
+    }
+
+    /**
+     * Drops the pending candidates, as when the search is stopped.
+     */
+    public synchronized void cancel() {
+        pending.clear();
+    }
+
+    private boolean acquire() {
+        while (true) {
+            int n = budget.get();
+            if (n <= 0) {
+                return false;
+            }
+            if (budget.compareAndSet(n, n - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        public final CrawlableSearchResult sr;
+        public final double value;
+        public final long seq;
+
+        public Candidate(CrawlableSearchResult sr, double value, long seq) {
+            this.sr = sr;
+            this.value = value;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int c = Double.compare(o.value, value);
+            if (c == 0) {
+                c = seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+            }
+            return c;
+        }
+    }
+}
@@ -18,6 +18,11 @@
 
 package com.frostwire.search;
 
+import com.frostwire.logging.Logger;
+import com.frostwire.util.http.HttpClient;
+
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -28,6 +33,8 @@ import java.util.List;
  */
 public abstract class CrawlRegexSearchPerformer<T extends CrawlableSearchResult> extends CrawlPagedWebSearchPerformer<T> implements RegexSearchPerformer<T> {
 
+    private static final Logger LOG = Logger.getLogger(CrawlRegexSearchPerformer.class);
+
     private final int regexMaxResults;
 
     public CrawlRegexSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int numCrawls, int regexMaxResults) {
@@ -35,12 +42,84 @@ public abstract class CrawlRegexSearchPerformer<T extends CrawlableSearchResult>
         this.regexMaxResults = regexMaxResults;
     }
 
+    /**
+     * When streaming, the results are sent as they are found while the page downloads,
+     * and this method returns an empty list.
+     */
+    @Override
+    protected List<? extends SearchResult> searchPage(int page) {
+        if (!isStreamingSearch() || getPageConcurrency() > 1) {
+            return super.searchPage(page);
+        }
+
+        SearchHealthRegistry health = SearchHealthRegistry.instance();
+        long start = System.currentTimeMillis();
+        StreamingRegexExtractor extractor = new StreamingRegexExtractor(this, getHtmlPrefixCue(), getHtmlSuffixCue(), regexMaxResults) {
+            @Override
+            protected void onMatches(List<SearchResult> results) {
+                onResults(results);
+            }
+        };
+        boolean failed = false;
+        try {
+            streamSearchPage(getUrl(page, getEncodedKeywords()), extractor);
+        } catch (Throwable e) {
+            failed = true;
+            LOG.error("Error streaming page: " + e.getMessage(), e);
+        }
+
+        if (!failed && extractor.getError() == null && extractor.getNumBytes() > 0) {
+            health.success(getDomainName(), System.currentTimeMillis() - start);
+            if (!extractor.isStarted()) {
+                LOG.warn(getClass().getSimpleName() + " page prefix not found while streaming. Notify developers at contact@frostwire.com");
+            }
+            health.parsed(getDomainName(), extractor.isStarted());
+        } else {
+            health.failure(getDomainName(), System.currentTimeMillis() - start);
+        }
+
+        return Collections.emptyList();
+    }
+
     @Override
     protected final List<? extends SearchResult> searchPage(String page) {
         String reducedPage = PerformersHelper.reduceHtml(page, preliminaryHtmlPrefixOffset(page), preliminaryHtmlSuffixOffset(page));
         return PerformersHelper.searchPageHelper(this, reducedPage, regexMaxResults);
     }
 
+    /**
+     * Override to return true to search the page while it downloads, see
+     * {@link #getHtmlPrefixCue()} and {@link #getHtmlSuffixCue()}. Only used when the
+     * pages are fetched one at a time.
+     */
+    protected boolean isStreamingSearch() {
+        return false;
+    }
+
+    /**
+     * The streaming version of {@link #fetchSearchPage(String)}, override to send
+     * cookies or custom headers.
+     */
+    protected void streamSearchPage(String url, HttpClient.HttpClientListener listener) throws IOException {
+        stream(url, null, null, listener);
+    }
+
+    /**
+     * The text where the results start in the page, the streaming version of
+     * {@link #preliminaryHtmlPrefixOffset(String)}. Null means the start of the page.
+     */
+    protected String getHtmlPrefixCue() {
+        return null;
+    }
+
+    /**
+     * The text where the results end in the page, the streaming version of
+     * {@link #preliminaryHtmlSuffixOffset(String)}. Null means the end of the page.
+     */
+    protected String getHtmlSuffixCue() {
+        return null;
+    }
+
     protected int preliminaryHtmlSuffixOffset(String page) {
         return page.length();
     }
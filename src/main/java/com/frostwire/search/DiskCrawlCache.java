@@ -0,0 +1,722 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.logging.Logger;
+import com.frostwire.util.ThreadPool;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent crawl cache, backed by an append only log of segment files.
+ * <p/>
+ * Every put or remove is appended as a record to the active segment, and an in
+ * memory index keeps the location of the last record of every key. Full segments
+ * are sealed and memory mapped for reading. Segments with mostly stale records are
+ * compacted in the background, and the oldest segments are dropped once the total
+ * size goes over the configured limit.
+ * <p/>
+ * Puts and removes never wait for the disk. They are kept in memory, where gets see
+ * them, until a single writer thread appends them, the same thread that compacts and
+ * evicts. The lock is only held to publish the changes, never during the writes, and
+ * the reads of sealed segments copy from the mapping outside of it. If the writer
+ * falls behind by more than {@link #MAX_PENDING_BYTES}, new puts are dropped.
+ * <p/>
+ * A removal is only forgotten once no older segment is left, a put of the same key in
+ * an older segment would bring the entry back at the next startup otherwise. While
+ * they are needed, removal records count as live and are copied forward by compaction.
+ * <p/>
+ * Record layout: crc32 (of key and data), key length, data length (-1 for removals),
+ * key (UTF-8) and data. A torn record at the end of a segment, from a crash for
+ * example, is detected at startup and truncated.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DiskCrawlCache implements CrawlCache {
+
+    private static final Logger LOG = Logger.getLogger(DiskCrawlCache.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String SEGMENT_PREFIX = "crawl-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int HEADER_SIZE = 12;
+    private static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024; // 8MB
+    private static final float COMPACTION_THRESHOLD = 0.5f; // compact when less than half is live
+    private static final int CLOSE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Max bytes of the puts waiting for the writer thread.
+     */
+    public static final long MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    // marks a pending remove, compared by identity
+    private static final byte[] REMOVED = new byte[0];
+
+    private final File dir;
+    private final long maxBytes;
+    private final int segmentSize;
+
+    private final ReentrantReadWriteLock lock;
+    private final Map<String, Location> index;
+    private final Map<String, Location> tombstones; // removals still hiding an older put
+    private final TreeMap<Integer, Segment> segments;
+    private final ExecutorService writer;
+    private final AtomicBoolean compactionScheduled;
+    private final ConcurrentMap<String, byte[]> pending;
+    private final AtomicLong pendingBytes;
+
+    // only changed by the writer thread, and under the write lock if read by others
+    private Segment active;
+    private long totalBytes;
+
+    /**
+     * @param dir         directory of the segment files, created if it doesn't exist
+     * @param maxBytes    max total size of the segment files
+     * @param segmentSize size at which a segment is sealed and a new one is started
+     */
+    public DiskCrawlCache(File dir, long maxBytes, int segmentSize) throws IOException {
+        if (maxBytes <= 0 || segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid cache sizes, maxBytes=" + maxBytes + ", segmentSize=" + segmentSize);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create crawl cache directory: " + dir);
+        }
+
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+
+        this.lock = new ReentrantReadWriteLock();
+        this.index = new HashMap<String, Location>();
+        this.tombstones = new HashMap<String, Location>();
+        this.segments = new TreeMap<Integer, Segment>();
+        this.writer = ThreadPool.newThreadPool("DiskCrawlCache", 1, true);
+        this.compactionScheduled = new AtomicBoolean(false);
+        this.pending = new ConcurrentHashMap<String, byte[]>();
+        this.pendingBytes = new AtomicLong();
+
+        load();
+    }
+
+    public DiskCrawlCache(File dir, long maxBytes) throws IOException {
+        this(dir, maxBytes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        byte[] data = pending.get(key);
+        if (data != null) {
+            return data != REMOVED ? data : null;
+        }
+
+        try {
+            Location loc;
+            ByteBuffer mapped;
+
+            lock.readLock().lock();
+            try {
+                loc = index.get(key);
+                if (loc == null) {
+                    return null;
+                }
+                Segment s = segments.get(loc.segment);
+                mapped = s.buffer;
+                if (mapped == null) {
+                    // the active segment, read from the file while it can't be closed
+                    return s.read(loc.offset + HEADER_SIZE + loc.keyLength, loc.dataLength);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // a sealed segment never changes, and its mapping is still valid if it's dropped meanwhile
+            return Segment.read(mapped, loc.offset + HEADER_SIZE + loc.keyLength, loc.dataLength);
+        } catch (Throwable e) {
+            LOG.warn("Error reading crawl cache entry: " + key + ", e=" + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        if (key == null || data == null) {
+            return;
+        }
+
+        if (pendingBytes.get() + data.length > MAX_PENDING_BYTES) {
+            LOG.info("Crawl cache writer is behind, not caching: " + key);
+            return;
+        }
+
+        enqueue(key, data);
+    }
+
+    @Override
+    public void remove(String key) {
+        if (key != null) {
+            enqueue(key, REMOVED);
+        }
+    }
+
+    /**
+     * Discards the pending changes and deletes all the segments, waiting for the writer
+     * thread to do it.
+     */
+    @Override
+    public void clear() {
+        for (String key : pending.keySet()) {
+            discard(key);
+        }
+
+        runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+                clearSegments();
+            }
+        });
+    }
+
+    /**
+     * Waits for the changes made so far to be written.
+     */
+    public void flush() {
+        runOnWriter(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * Returns the total size in bytes of the segment files.
+     */
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int numEntries() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the pending changes to be written and a running compaction to finish,
+     * and closes the segment files.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Segment s : segments.values()) {
+                s.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void enqueue(final String key, byte[] data) {
+        byte[] old = pending.put(key, data);
+        pendingBytes.addAndGet(data.length - (old != null ? old.length : 0));
+
+        try {
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            discard(key);
+        }
+    }
+
+    // waits for the task to run after everything already queued
+    private void runOnWriter(Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            LOG.warn("Error running crawl cache task: " + e.getMessage());
+        }
+    }
+
+    private void discard(String key) {
+        byte[] data = pending.remove(key);
+        if (data != null) {
+            pendingBytes.addAndGet(-data.length);
+        }
+    }
+
+    // writer thread, writes the last change of the key, if not already written
+    private void flush(String key) {
+        byte[] data = pending.get(key);
+        if (data == null) {
+            return;
+        }
+
+        try {
+            if (data != REMOVED) {
+                append(key, data);
+                evict();
+            } else if (index.containsKey(key)) {
+                append(key, null);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error writing crawl cache entry: " + key + ", e=" + e.getMessage());
+        } finally {
+            // only if there is no newer change, it's in the index now
+            if (pending.remove(key, data)) {
+                pendingBytes.addAndGet(-data.length);
+            }
+        }
+    }
+
+    // writer thread
+    private void clearSegments() {
+        lock.writeLock().lock();
+        try {
+            for (Segment s : segments.values()) {
+                s.delete();
+            }
+            segments.clear();
+            index.clear();
+            tombstones.clear();
+            totalBytes = 0;
+            active = newSegment(0);
+        } catch (Throwable e) {
+            LOG.warn("Error clearing crawl cache: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // writer thread, the record is written past what the readers can see, without the lock
+    private void append(String key, byte[] data) throws IOException {
+        byte[] k = key.getBytes(UTF_8);
+        int dataLength = data != null ? data.length : -1;
+        int recordSize = HEADER_SIZE + k.length + (data != null ? data.length : 0);
+
+        if (active.length > 0 && active.length + recordSize > segmentSize) {
+            roll();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(k);
+        if (data != null) {
+            crc.update(data);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt((int) crc.getValue()).putInt(k.length).putInt(dataLength).flip();
+
+        long offset = active.length;
+        active.write(offset, header, ByteBuffer.wrap(k), data != null ? ByteBuffer.wrap(data) : null);
+
+        Location loc = new Location(active.id, offset, k.length, data != null ? data.length : 0);
+
+        lock.writeLock().lock();
+        try {
+            totalBytes += recordSize;
+            release(index.remove(key));
+            release(tombstones.remove(key));
+            if (data != null) {
+                index.put(key, loc);
+            } else {
+                tombstones.put(key, loc);
+            }
+            active.liveBytes += recordSize;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // must be called holding the write lock, the record at the location is no longer live
+    private void release(Location loc) {
+        if (loc != null) {
+            Segment s = segments.get(loc.segment);
+            s.liveBytes -= loc.recordSize();
+            if (s != active && s.liveBytes < s.length * COMPACTION_THRESHOLD) {
+                scheduleCompaction();
+            }
+        }
+    }
+
+    // writer thread
+    private void roll() throws IOException {
+        active.seal();
+        active = newSegment(active.id + 1);
+        scheduleCompaction();
+    }
+
+    // writer thread
+    private void evict() throws IOException {
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            dropSegment(oldest);
+        }
+    }
+
+    // writer thread
+    private void dropSegment(Segment s) {
+        lock.writeLock().lock();
+        try {
+            removeLocations(index, s.id);
+            removeLocations(tombstones, s.id);
+            segments.remove(s.id);
+            totalBytes -= s.length;
+            s.delete();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void removeLocations(Map<String, Location> map, int segment) {
+        Iterator<Location> it = map.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().segment == segment) {
+                it.remove();
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (!writer.isShutdown() && compactionScheduled.compareAndSet(false, true)) {
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compactionScheduled.set(false);
+                    compact();
+                }
+            });
+        }
+    }
+
+    /**
+     * Rewrites the live records of the sealed segments that are mostly stale, on the
+     * writer thread, so readers are only blocked while each record is published.
+     */
+    private void compact() {
+        List<Integer> candidates = new ArrayList<Integer>();
+        for (Segment s : segments.values()) {
+            if (s != active && s.liveBytes < s.length * COMPACTION_THRESHOLD) {
+                candidates.add(s.id);
+            }
+        }
+
+        for (Integer id : candidates) {
+            try {
+                Segment s = segments.get(id);
+                if (s == null || s == active) {
+                    continue;
+                }
+
+                for (String key : keysIn(index, id)) {
+                    Location loc = index.get(key);
+                    append(key, s.read(loc.offset + HEADER_SIZE + loc.keyLength, loc.dataLength));
+                }
+
+                // the removals are only needed while an older segment may have a put of the key
+                boolean older = segments.firstKey() < id;
+                for (String key : keysIn(tombstones, id)) {
+                    if (older) {
+                        append(key, null);
+                    } else {
+                        lock.writeLock().lock();
+                        try {
+                            release(tombstones.remove(key));
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    }
+                }
+
+                // at this point nothing in the index points to this segment
+                dropSegment(s);
+            } catch (Throwable e) {
+                LOG.warn("Error compacting crawl cache segment: " + id + ", e=" + e.getMessage());
+            }
+        }
+    }
+
+    private static List<String> keysIn(Map<String, Location> map, int segment) {
+        List<String> keys = new ArrayList<String>();
+        for (Map.Entry<String, Location> e : map.entrySet()) {
+            if (e.getValue().segment == segment) {
+                keys.add(e.getKey());
+            }
+        }
+        return keys;
+    }
+
+    private void load() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                        segments.put(id, new Segment(id, f));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Ignoring unknown file in crawl cache directory: " + f);
+                    }
+                }
+            }
+        }
+
+        for (Segment s : segments.values()) {
+            scan(s);
+            totalBytes += s.length;
+        }
+
+        if (segments.isEmpty()) {
+            active = newSegment(0);
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            for (Segment s : segments.values()) {
+                if (s != last) {
+                    s.seal();
+                }
+            }
+            active = last;
+            if (active.length >= segmentSize) {
+                roll();
+            }
+        }
+
+        evict();
+        scheduleCompaction();
+    }
+
+    /**
+     * Rebuilds the index entries of the segment, truncating it at the first invalid record.
+     */
+    private void scan(Segment s) throws IOException {
+        long fileLength = s.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (offset + HEADER_SIZE <= fileLength) {
+            header.clear();
+            s.readFully(offset, header);
+            header.flip();
+
+            int crc = header.getInt();
+            int keyLength = header.getInt();
+            int dataLength = header.getInt();
+
+            long recordSize = HEADER_SIZE + (long) keyLength + Math.max(dataLength, 0);
+            if (keyLength < 0 || dataLength < -1 || offset + recordSize > fileLength) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(keyLength + Math.max(dataLength, 0));
+            s.readFully(offset + HEADER_SIZE, body);
+
+            CRC32 c = new CRC32();
+            c.update(body.array());
+            if ((int) c.getValue() != crc) {
+                break;
+            }
+
+            String key = new String(body.array(), 0, keyLength, UTF_8);
+            Location loc = new Location(s.id, offset, keyLength, Math.max(dataLength, 0));
+            Location old = index.remove(key);
+            if (old != null) {
+                segments.get(old.segment).liveBytes -= old.recordSize();
+            }
+            old = tombstones.remove(key);
+            if (old != null) {
+                segments.get(old.segment).liveBytes -= old.recordSize();
+            }
+            if (dataLength >= 0) {
+                index.put(key, loc);
+            } else if (s.id > segments.firstKey()) {
+                tombstones.put(key, loc);
+            }
+            if (dataLength >= 0 || s.id > segments.firstKey()) {
+                s.liveBytes += recordSize;
+            }
+
+            offset += recordSize;
+        }
+
+        if (offset < fileLength) {
+            LOG.warn("Truncating crawl cache segment " + s.file + " at " + offset + ", found an invalid record");
+            s.channel.truncate(offset);
+        }
+        s.length = offset;
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Segment s = new Segment(id, new File(dir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+        s.channel.truncate(0);
+
+        lock.writeLock().lock();
+        try {
+            segments.put(id, s);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return s;
+    }
+
+    private static final class Location {
+
+        public final int segment;
+        public final long offset;
+        public final int keyLength;
+        public final int dataLength; // 0 for removals
+
+        public Location(int segment, long offset, int keyLength, int dataLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.dataLength = dataLength;
+        }
+
+        public int recordSize() {
+            return HEADER_SIZE + keyLength + dataLength;
+        }
+    }
+
+    private static final class Segment {
+
+        public final int id;
+        public final File file;
+
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+
+        // only set once sealed, the content never changes after that
+        private volatile MappedByteBuffer buffer;
+
+        public long length;
+        public long liveBytes;
+
+        public Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        }
+
+        public void seal() throws IOException {
+            channel.force(false);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+
+        public void write(long offset, ByteBuffer... buffers) throws IOException {
+            long position = offset;
+            for (ByteBuffer b : buffers) {
+                if (b != null) {
+                    while (b.hasRemaining()) {
+                        position += channel.write(b, position);
+                    }
+                }
+            }
+            length = position;
+        }
+
+        public byte[] read(long offset, int size) throws IOException {
+            ByteBuffer mapped = buffer;
+            if (mapped != null) {
+                return read(mapped, offset, size);
+            }
+            byte[] data = new byte[size];
+            readFully(offset, ByteBuffer.wrap(data));
+            return data;
+        }
+
+        public static byte[] read(ByteBuffer mapped, long offset, int size) {
+            byte[] data = new byte[size];
+            ByteBuffer b = mapped.duplicate();
+            b.position((int) offset);
+            b.get(data);
+            return data;
+        }
+
+        public void readFully(long offset, ByteBuffer dst) throws IOException {
+            long position = offset;
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, position);
+                if (n < 0) {
+                    throw new IOException("Unexpected end of segment " + file);
+                }
+                position += n;
+            }
+        }
+
+        public void close() {
+            buffer = null;
+            IOUtils.closeQuietly(raf);
+        }
+
+        public void delete() {
+            close();
+            if (!file.delete()) {
+                // mapped files can't be deleted on some platforms until the mapping is collected
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Extracts the fields of a detail page in a single forward pass, as an alternative
+ * to one big regex with a lazy {@code .*?} between every field.
+ * <p/>
+ * The fields are declared in the order they appear in the page. Each one is found
+ * by looking for its cue text after the previous field, and its value is either the
+ * text up to an end text, or the first group of the first match of a small pattern
+ * after the cue. Every step starts where the previous one ended, so the page is
+ * scanned once, without backtracking across fields.
+ * <p/>
+ * Usage:
+ * <pre>
+ * private static final HtmlFieldExtractor FIELDS = new HtmlFieldExtractor()
+ *         .field("hash", "magnet:?xt=urn:btih:", "&amp;")
+ *         .skip("Size:")
+ *         .field("size", "&lt;b&gt;", "&lt;/b&gt;");
+ * </pre>
+ * Once declared, as a constant, an extractor can be shared by threads.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class HtmlFieldExtractor {
+
+    private final List<Step> steps;
+    private final List<String> names;
+
+    public HtmlFieldExtractor() {
+        this.steps = new ArrayList<Step>();
+        this.names = new ArrayList<String>();
+    }
+
+    /**
+     * Moves past the next occurrence of the cue, without extracting anything.
+     */
+    public HtmlFieldExtractor skip(String cue) {
+        steps.add(new Step(-1, cue, null, null));
+        return this;
+    }
+
+    /**
+     * The field is the text between the next occurrence of the cue and the end text.
+     */
+    public HtmlFieldExtractor field(String name, String cue, String end) {
+        steps.add(new Step(names.size(), cue, end, null));
+        names.add(name);
+        return this;
+    }
+
+    /**
+     * The field is the first group of the first match of the pattern after the
+     * next occurrence of the cue.
+     */
+    public HtmlFieldExtractor field(String name, String cue, Pattern pattern) {
+        steps.add(new Step(names.size(), cue, null, pattern));
+        names.add(name);
+        return this;
+    }
+
+    /**
+     * Extracts the fields from the region of the html between the given offsets.
+     * Returns null if any of the cues or fields is missing.
+     */
+    public Fields extract(String html, int from, int to) {
+        String[] values = new String[names.size()];
+        int pos = from;
+
+        for (Step step : steps) {
+            int cue = html.indexOf(step.cue, pos);
+            if (cue == -1 || cue + step.cue.length() > to) {
+                return null;
+            }
+            pos = cue + step.cue.length();
+
+            if (step.end != null) {
+                int end = html.indexOf(step.end, pos);
+                if (end == -1 || end + step.end.length() > to) {
+                    return null;
+                }
+                values[step.index] = html.substring(pos, end);
+                pos = end + step.end.length();
+            } else if (step.pattern != null) {
+                Matcher m = step.pattern.matcher(html);
+                if (!m.find(pos) || m.end() > to) {
+                    return null;
+                }
+                values[step.index] = m.group(1);
+                pos = m.end();
+            }
+        }
+
+        return new Fields(names, values, pos);
+    }
+
+    /**
+     * Extracts the fields repeatedly, one record after the other, as in the rows
+     * of a table, until they can't be found anymore.
+     */
+    public List<Fields> extractAll(String html, int from, int to) {
+        List<Fields> list = new LinkedList<Fields>();
+        int pos = from;
+        Fields fields;
+        while (pos < to && (fields = extract(html, pos, to)) != null) {
+            list.add(fields);
+            pos = fields.end;
+        }
+        return list;
+    }
+
+    public static final class Fields {
+
+        private final List<String> names;
+        private final String[] values;
+        private final int end;
+
+        Fields(List<String> names, String[] values, int end) {
+            this.names = names;
+            this.values = values;
+            this.end = end;
+        }
+
+        /**
+         * Returns the value of the field, or null if there is no field with that name.
+         */
+        public String get(String name) {
+            int i = names.indexOf(name);
+            return i != -1 ? values[i] : null;
+        }
+
+        /**
+         * Offset in the html after the last step.
+         */
+        public int end() {
+            return end;
+        }
+    }
+
+    private static final class Step {
+
+        public final int index;
+        public final String cue;
+        public final String end;
+        public final Pattern pattern;
+
+        public Step(int index, String cue, String end, Pattern pattern) {
+            this.index = index;
+            this.cue = cue;
+            this.end = end;
+            this.pattern = pattern;
+        }
+    }
+}
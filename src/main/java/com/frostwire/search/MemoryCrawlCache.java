@@ -0,0 +1,270 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.logging.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory crawl cache bounded by the total number of bytes it holds.
+ * <p/>
+ * The keys are spread over independent segments, each one with its own lock and
+ * its own share of the byte budget, evicting the least recently used entries first.
+ * Threads working on different segments never wait for each other.
+ * <p/>
+ * The number of segments is lowered when needed so that every segment can hold an
+ * entry of {@link #MIN_SEGMENT_BYTES}, as a big .torrent, which is the most expensive
+ * to download again. Entries heavier than a segment are not cached and counted as
+ * rejections.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MemoryCrawlCache implements CrawlCache {
+
+    private static final Logger LOG = Logger.getLogger(MemoryCrawlCache.class);
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    /**
+     * Size of the largest entries expected, segments are not made smaller than this
+     * unless the whole budget is.
+     */
+    public static final long MIN_SEGMENT_BYTES = 8 * 1024 * 1024;
+
+    // rough per entry cost of the map node, the key and the array headers
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Segment[] segments;
+    private final int mask;
+    private final long maxBytes;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final AtomicLong rejections;
+
+    /**
+     * @param maxBytes    total bytes budget, including an estimation of the keys and entries overhead
+     * @param numSegments concurrency level, rounded up to a power of two, and lowered if
+     *                    the segments would be smaller than {@link #MIN_SEGMENT_BYTES}
+     */
+    public MemoryCrawlCache(long maxBytes, int numSegments) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        if (numSegments <= 0) {
+            throw new IllegalArgumentException("numSegments must be > 0");
+        }
+
+        int n = 1;
+        while (n < numSegments) {
+            n <<= 1;
+        }
+        while (n > 1 && maxBytes / n < MIN_SEGMENT_BYTES) {
+            n >>= 1;
+        }
+
+        this.segments = new Segment[n];
+        this.mask = n - 1;
+        this.maxBytes = maxBytes;
+
+        long segmentMaxBytes = Math.max(1, maxBytes / n);
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(segmentMaxBytes);
+        }
+
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.rejections = new AtomicLong();
+    }
+
+    public MemoryCrawlCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SEGMENTS);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        byte[] data = segmentFor(key).get(key);
+        if (data != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return data;
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        if (key == null || data == null) {
+            return;
+        }
+        int evicted = segmentFor(key).put(key, data);
+        if (evicted >= 0) {
+            evictions.addAndGet(evicted);
+        } else {
+            rejections.incrementAndGet();
+            LOG.info("Entry too big for the crawl cache, not cached: " + key + ", bytes: " + data.length);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        if (key != null) {
+            segmentFor(key).remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Returns the number of bytes in use, an estimation that includes
+     * the keys and the entries overhead.
+     */
+    @Override
+    public long size() {
+        long r = 0;
+        for (Segment s : segments) {
+            r += s.bytes();
+        }
+        return r;
+    }
+
+    public long maxSize() {
+        return maxBytes;
+    }
+
+    public int numEntries() {
+        int r = 0;
+        for (Segment s : segments) {
+            r += s.numEntries();
+        }
+        return r;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Number of entries not cached because they were heavier than a segment.
+     */
+    public long rejections() {
+        return rejections.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryCrawlCache(bytes: " + size() + "/" + maxBytes + ", entries: " + numEntries() +
+                ", hits: " + hits() + ", misses: " + misses() + ", evictions: " + evictions() + ", rejections: " + rejections() + ")";
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & mask];
+    }
+
+    private static long weight(String key, byte[] data) {
+        return ENTRY_OVERHEAD + 2L * key.length() + data.length;
+    }
+
+    private static final class Segment {
+
+        private final long maxBytes;
+        private final LinkedHashMap<String, byte[]> map;
+        private long bytes;
+
+        public Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.map = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+        }
+
+        public synchronized byte[] get(String key) {
+            return map.get(key);
+        }
+
+        /**
+         * Returns the number of evicted entries, or -1 if the entry is too big to be cached.
+         */
+        public synchronized int put(String key, byte[] data) {
+            byte[] old = map.remove(key);
+            if (old != null) {
+                bytes -= weight(key, old);
+            }
+
+            long w = weight(key, data);
+            if (w > maxBytes) {
+                // would evict everything else and still not fit
+                return -1;
+            }
+
+            map.put(key, data);
+            bytes += w;
+
+            int evicted = 0;
+            Iterator<Map.Entry<String, byte[]>> it = map.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, byte[]> e = it.next();
+                bytes -= weight(e.getKey(), e.getValue());
+                it.remove();
+                evicted++;
+            }
+
+            return evicted;
+        }
+
+        public synchronized void remove(String key) {
+            byte[] old = map.remove(key);
+            if (old != null) {
+                bytes -= weight(key, old);
+            }
+        }
+
+        public synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+
+        public synchronized long bytes() {
+            return bytes;
+        }
+
+        public synchronized int numEntries() {
+            return map.size();
+        }
+    }
+}
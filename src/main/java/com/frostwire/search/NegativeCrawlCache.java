@@ -0,0 +1,210 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.http.HttpClient;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers failed crawls, so that the same url is not requested again for a while
+ * and hosts that keep failing are skipped altogether.
+ * <p/>
+ * Every consecutive failure doubles the time a url (or host) is skipped, starting
+ * from a base time that depends on the kind of failure. A client error (4xx) only
+ * affects the url, timeouts, server errors (5xx) and connection errors count against
+ * the host as well, and after a few of them in a row all crawls of the host are
+ * skipped. A successful crawl resets the host.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class NegativeCrawlCache {
+
+    public enum Failure {
+        TIMEOUT(2 * 60 * 1000, true), // 2 minutes
+        CLIENT_ERROR(30 * 60 * 1000, false), // 30 minutes, the url is most likely gone
+        SERVER_ERROR(60 * 1000, true), // 1 minute
+        OTHER(60 * 1000, true); // 1 minute
+
+        private final long baseBackoff;
+        private final boolean hostFailure;
+
+        Failure(long baseBackoff, boolean hostFailure) {
+            this.baseBackoff = baseBackoff;
+            this.hostFailure = hostFailure;
+        }
+
+        public static Failure fromThrowable(Throwable e) {
+            if (e instanceof InterruptedIOException) { // includes SocketTimeoutException
+                return TIMEOUT;
+            }
+            if (e instanceof HttpClient.ResponseCodeNotSupportedException) {
+                return fromResponseCode(((HttpClient.ResponseCodeNotSupportedException) e).getResponseCode());
+            }
+            return OTHER;
+        }
+
+        public static Failure fromResponseCode(int code) {
+            if (code >= 400 && code < 500) {
+                return code == 408 || code == 429 ? TIMEOUT : CLIENT_ERROR;
+            }
+            if (code >= 500 && code < 600) {
+                return SERVER_ERROR;
+            }
+            return OTHER;
+        }
+    }
+
+    private static final long MAX_URL_BACKOFF = 6 * 60 * 60 * 1000; // 6 hours
+    private static final long HOST_BASE_BACKOFF = 60 * 1000; // 1 minute
+    private static final long MAX_HOST_BACKOFF = 30 * 60 * 1000; // 30 minutes
+    private static final int HOST_FAILURES_THRESHOLD = 3;
+    private static final int MAX_ENTRIES = 4096;
+
+    private final ConcurrentMap<String, Entry> urls;
+    private final ConcurrentMap<String, Entry> hosts;
+
+    public NegativeCrawlCache() {
+        this.urls = new ConcurrentHashMap<String, Entry>();
+        this.hosts = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Returns true if the url, or its host, failed recently and should not be crawled now.
+     */
+    public boolean isBlocked(String url) {
+        long now = System.currentTimeMillis();
+
+        Entry e = urls.get(url);
+        if (e != null && e.isBlocked(now)) {
+            return true;
+        }
+
+        String host = host(url);
+        if (host != null) {
+            e = hosts.get(host);
+            if (e != null && e.isBlocked(now)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void failed(String url, Failure failure) {
+        long now = System.currentTimeMillis();
+
+        purge(urls, now);
+        entry(urls, url).failed(now, failure.baseBackoff, MAX_URL_BACKOFF, 1);
+
+        String host = host(url);
+        if (host != null && failure.hostFailure) {
+            purge(hosts, now);
+            entry(hosts, host).failed(now, HOST_BASE_BACKOFF, MAX_HOST_BACKOFF, HOST_FAILURES_THRESHOLD);
+        }
+    }
+
+    public void succeeded(String url) {
+        urls.remove(url);
+
+        String host = host(url);
+        if (host != null) {
+            hosts.remove(host);
+        }
+    }
+
+    public void clear() {
+        urls.clear();
+        hosts.clear();
+    }
+
+    private static Entry entry(ConcurrentMap<String, Entry> map, String key) {
+        Entry e = map.get(key);
+        if (e == null) {
+            Entry newEntry = new Entry();
+            e = map.putIfAbsent(key, newEntry);
+            if (e == null) {
+                e = newEntry;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Keeps the maps bounded, dropping the entries no longer blocking
+     * and everything if that's not enough.
+     */
+    private static void purge(ConcurrentMap<String, Entry> map, long now) {
+        if (map.size() < MAX_ENTRIES) {
+            return;
+        }
+
+        Iterator<Entry> it = map.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().isBlocked(now)) {
+                it.remove();
+            }
+        }
+
+        if (map.size() >= MAX_ENTRIES) {
+            map.clear();
+        }
+    }
+
+    /**
+     * Returns null for urls without a host, like magnets.
+     */
+    private static String host(String url) {
+        if (url == null || !url.startsWith("http")) {
+            return null;
+        }
+        try {
+            String host = new URI(url).getHost();
+            return host != null ? host.toLowerCase(Locale.US) : null;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private int failures;
+        private long blockedUntil;
+
+        public synchronized boolean isBlocked(long now) {
+            return now < blockedUntil;
+        }
+
+        /**
+         * Blocks once there are at least {@code minFailures} failures in a row.
+         */
+        public synchronized void failed(long now, long baseBackoff, long maxBackoff, int minFailures) {
+            failures++;
+            if (failures >= minFailures) {
+                long backoff = baseBackoff << Math.min(failures - minFailures, 20);
+                blockedUntil = now + Math.min(backoff, maxBackoff);
+            }
+        }
+    }
+}
@@ -23,7 +23,10 @@ import com.frostwire.util.StringUtils;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * @author gubatron
@@ -35,6 +38,8 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
 
     private final int pages;
 
+    private volatile Executor pageExecutor;
+
     public PagedWebSearchPerformer(String domainName, long token, String keywords, int timeout, int pages) {
         super(domainName, token, keywords, timeout);
         this.pages = pages;
@@ -42,25 +47,106 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
 
     @Override
     public void perform() {
-        for (int i = 1; !isStopped() && i <= pages; i++) {
-            onResults(searchPage(i));
+        int concurrency = getPageConcurrency();
+        if (concurrency > 1 && pages > 1 && pageExecutor != null) {
+            performConcurrently(concurrency);
+        } else {
+            for (int i = 1; !isStopped() && i <= pages; i++) {
+                onResults(searchPage(i));
+            }
         }
     }
 
+    /**
+     * Override to fetch up to this number of pages at the same time. The default
+     * is 1, fetching the pages one after the other. The pages are only fetched
+     * concurrently when the performer runs in a {@link SearchManagerImpl}, whose
+     * limit of tasks per domain also applies to the page fetches.
+     */
+    protected int getPageConcurrency() {
+        return 1;
+    }
+
+    /**
+     * When pages are fetched concurrently, return false to send the results of
+     * each page as soon as it arrives instead of in page order.
+     */
+    protected boolean isPageOrderPreserved() {
+        return true;
+    }
+
+    /**
+     * Set by the search manager, runs the page fetches of this performer's domain.
+     */
+    void setPageExecutor(Executor pageExecutor) {
+        this.pageExecutor = pageExecutor;
+    }
+
     protected List<? extends SearchResult> searchPage(int page) {
         List<? extends SearchResult> result = Collections.emptyList();
+        SearchHealthRegistry health = SearchHealthRegistry.instance();
+        long start = System.currentTimeMillis();
         try {
             String url = getUrl(page, getEncodedKeywords());
             String text = fetchSearchPage(url);
             if (!StringUtils.isNullOrEmpty(text)) {
+                health.success(getDomainName(), System.currentTimeMillis() - start);
                 result = searchPage(text);
+            } else {
+                health.failure(getDomainName(), System.currentTimeMillis() - start);
             }
         } catch (Throwable e) {
+            health.failure(getDomainName(), System.currentTimeMillis() - start);
             LOG.error("Error searching page: " + e.getMessage(), e);
         }
         return result;
     }
 
+    private void performConcurrently(int concurrency) {
+        CompletionService<PageResults> cs = new ExecutorCompletionService<PageResults>(pageExecutor);
+        boolean ordered = isPageOrderPreserved();
+
+        // only used when ordered, pages already fetched waiting for the previous ones
+        Map<Integer, List<? extends SearchResult>> done = new HashMap<Integer, List<? extends SearchResult>>();
+        int nextToEmit = 1;
+
+        int nextToFetch = 1;
+        int inFlight = 0;
+
+        try {
+            while (nextToFetch <= pages && inFlight < concurrency) {
+                cs.submit(new PageTask(this, nextToFetch++));
+                inFlight++;
+            }
+
+            while (inFlight > 0) {
+                PageResults r = cs.take().get();
+                inFlight--;
+
+                // pages not yet started are cut off once the search is stopped
+                if (!isStopped() && nextToFetch <= pages) {
+                    cs.submit(new PageTask(this, nextToFetch++));
+                    inFlight++;
+                }
+
+                if (ordered) {
+                    done.put(r.page, r.results);
+                    while (done.containsKey(nextToEmit)) {
+                        onResults(done.remove(nextToEmit++));
+                    }
+                } else {
+                    onResults(r.results);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Error searching pages concurrently: " + e.getMessage(), e);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Page fetch rejected, search manager is shutting down");
+        }
+    }
+
     protected String fetchSearchPage(String url) throws IOException {
         return fetch(url);
     }
@@ -68,4 +154,36 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
     protected abstract String getUrl(int page, String encodedKeywords);
 
     protected abstract List<? extends SearchResult> searchPage(String page);
+
+    private static final class PageResults {
+
+        public final int page;
+        public final List<? extends SearchResult> results;
+
+        public PageResults(int page, List<? extends SearchResult> results) {
+            this.page = page;
+            this.results = results;
+        }
+    }
+
+    private static final class PageTask implements Callable<PageResults> {
+
+        private final PagedWebSearchPerformer performer;
+        private final int page;
+
+        public PageTask(PagedWebSearchPerformer performer, int page) {
+            this.performer = performer;
+            this.page = page;
+        }
+
+        @Override
+        public PageResults call() {
+            List<? extends SearchResult> results = Collections.emptyList();
+            if (!performer.isStopped()) {
+                results = performer.searchPage(page);
+            }
+            // never null, an empty list marks the page as done
+            return new PageResults(page, results != null ? results : Collections.<SearchResult>emptyList());
+        }
+    }
 }
@@ -17,15 +17,17 @@
 
 package com.frostwire.search;
 
-import com.frostwire.jlibtorrent.FileStorage;
-import com.frostwire.jlibtorrent.TorrentInfo;
 import com.frostwire.logging.Logger;
 import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
-import com.frostwire.search.torrent.TorrentCrawledSearchResult;
+import com.frostwire.search.torrent.TorrentCrawledAlbumSearchResult;
+import com.frostwire.search.torrent.TorrentCrawledResults;
+import com.frostwire.search.torrent.TorrentMetadata;
 import com.frostwire.regex.Pattern;
 
+import java.util.AbstractList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * @author gubatron
@@ -45,6 +47,7 @@ public final class PerformersHelper {
 
         if (page == null) {
             LOG.warn(performer.getClass().getSimpleName() + " returning null page. Issue fetching page or issue getting page prefix/suffix offsets. Notify developers at contact@frostwire.com");
+            reportParsed(performer, false);
             return result;
         }
 
@@ -70,41 +73,48 @@ public final class PerformersHelper {
             }
         } while (matcherFound && i < max && !performer.isStopped());
 
+        // zero matches is a valid page, as the last ones of a narrow search
+        reportParsed(performer, true);
+
         return result;
     }
 
+    private static void reportParsed(RegexSearchPerformer<?> performer, boolean parsed) {
+        if (performer instanceof WebSearchPerformer) {
+            SearchHealthRegistry.instance().parsed(((WebSearchPerformer) performer).getDomainName(), parsed);
+        }
+    }
+
     /**
-     * This method is only public allow reuse inside the package search, consider it a private API
+     * Returns the files of the torrent, as a list that creates the results on demand,
+     * see {@link TorrentCrawledResults}. If albums are detected, they come after the files.
+     * <p/>
+     * This method is only public allow reuse inside the package search, consider it a private API.
+     *
+     * @param filter selects the files before anything is created for them, can be null
      */
-    public static List<? extends SearchResult> crawlTorrent(SearchPerformer performer, TorrentCrawlableSearchResult sr, byte[] data, boolean detectAlbums) {
-        List<TorrentCrawledSearchResult> list = new LinkedList<TorrentCrawledSearchResult>();
-
-        TorrentInfo ti = TorrentInfo.bdecode(data);
+    public static List<? extends SearchResult> crawlTorrent(SearchPerformer performer, TorrentCrawlableSearchResult sr, byte[] data, boolean detectAlbums, TorrentCrawledResults.Filter filter) {
+        // read in java, the native torrent info is created later if the user asks for it
+        TorrentMetadata md = TorrentMetadata.parse(data);
 
-        int numFiles = ti.getNumFiles();
-        FileStorage fs = ti.getFiles();
+        TorrentCrawledResults list = new TorrentCrawledResults(performer, sr, md, filter);
 
-        for (int i = 0; !performer.isStopped() && i < numFiles; i++) {
-            // TODO: Check for the hidden attribute
-            if (fs.isPadFileAt(i)) {
-                continue;
+        if (detectAlbums) {
+            List<TorrentCrawledAlbumSearchResult> albums = new AlbumCluster().detect(list);
+            if (!albums.isEmpty()) {
+                return new JoinedList(list, albums);
             }
-
-            list.add(new TorrentCrawledSearchResult(sr, ti, i, fs.getFilePath(i), fs.getFileSize(i)));
         }
 
-        if (detectAlbums) {
-            List<SearchResult> temp = new LinkedList<SearchResult>();
-            temp.addAll(list);
-            temp.addAll(new AlbumCluster().detect(sr, list));
-            return temp;
-        } else {
-            return list;
-        }
+        return list;
+    }
+
+    public static List<? extends SearchResult> crawlTorrent(SearchPerformer performer, TorrentCrawlableSearchResult sr, byte[] data, boolean detectAlbums) {
+        return crawlTorrent(performer, sr, data, detectAlbums, null);
     }
 
     public static List<? extends SearchResult> crawlTorrent(SearchPerformer performer, TorrentCrawlableSearchResult sr, byte[] data) {
-        return crawlTorrent(performer, sr, data, false);
+        return crawlTorrent(performer, sr, data, true);
     }
 
     public static String parseInfoHash(String url) {
@@ -130,4 +140,30 @@ public final class PerformersHelper {
         }
         return html;
     }
+
+    /**
+     * Read only view of a list followed by another, so that the lazy list of
+     * crawled files is not copied to add the albums.
+     */
+    private static final class JoinedList extends AbstractList<SearchResult> implements RandomAccess {
+
+        private final List<? extends SearchResult> first;
+        private final List<? extends SearchResult> second;
+
+        public JoinedList(List<? extends SearchResult> first, List<? extends SearchResult> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public SearchResult get(int index) {
+            int n = first.size();
+            return index < n ? first.get(index) : second.get(index - n);
+        }
+
+        @Override
+        public int size() {
+            return first.size() + second.size();
+        }
+    }
 }
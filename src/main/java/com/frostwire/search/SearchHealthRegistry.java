@@ -0,0 +1,269 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Health of the search engines, by domain name, shared by all the searches.
+ * <p/>
+ * Every search page request reports its latency and outcome, and every regex
+ * search page reports whether its results could be located, by the expected cue
+ * points or offsets. A page with no results, as with an obscure query or the last
+ * pages of a narrow search, is not a problem. A domain with several failures in a
+ * row (or a long run of broken pages, a sign of a site redesign) gets its circuit
+ * opened and its searches are skipped. After a wait, that doubles
+ * every time the domain keeps failing, a single search is let through as a probe,
+ * closing the circuit again if it succeeds.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchHealthRegistry {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int FAILURES_THRESHOLD = 3;
+    private static final int BROKEN_PAGES_THRESHOLD = 10;
+    private static final long MIN_OPEN_TIME = 30 * 1000; // 30 seconds
+    private static final long MAX_OPEN_TIME = 10 * 60 * 1000; // 10 minutes
+    private static final long PROBE_TIMEOUT = 60 * 1000; // 1 minute
+    private static final double ALPHA = 0.2; // weight of the newest sample in the moving averages
+
+    private static final SearchHealthRegistry instance = new SearchHealthRegistry();
+
+    public static SearchHealthRegistry instance() {
+        return instance;
+    }
+
+    private final ConcurrentMap<String, Health> domains;
+
+    private SearchHealthRegistry() {
+        this.domains = new ConcurrentHashMap<String, Health>();
+    }
+
+    /**
+     * Returns false if the circuit of the domain is open, the caller should not
+     * perform the search. If it returns true while the circuit is half open, the
+     * caller's search is the probe.
+     */
+    public boolean allowRequest(String domain) {
+        if (domain == null || domain.length() == 0) {
+            return true;
+        }
+        return health(domain).allowRequest(System.currentTimeMillis());
+    }
+
+    public void success(String domain, long latency) {
+        if (domain != null) {
+            health(domain).success(latency);
+        }
+    }
+
+    public void failure(String domain, long latency) {
+        if (domain != null) {
+            health(domain).failure(System.currentTimeMillis(), latency);
+        }
+    }
+
+    /**
+     * Reports whether the results could be located in a page, false only when the
+     * cue points or offsets of the results were missing, not when there were none.
+     */
+    public void parsed(String domain, boolean parsed) {
+        if (domain != null) {
+            health(domain).parsed(System.currentTimeMillis(), parsed);
+        }
+    }
+
+    public Health get(String domain) {
+        return domains.get(domain);
+    }
+
+    /**
+     * Returns the score of the domain, from 0 (dead or open circuit) to 1 (healthy).
+     * Unknown domains are considered healthy.
+     */
+    public double score(String domain) {
+        Health h = domains.get(domain);
+        return h != null ? h.score() : 1.0;
+    }
+
+    public Map<String, Health> snapshot() {
+        return Collections.unmodifiableMap(new HashMap<String, Health>(domains));
+    }
+
+    public void reset() {
+        domains.clear();
+    }
+
+    private Health health(String domain) {
+        Health h = domains.get(domain);
+        if (h == null) {
+            Health newHealth = new Health(domain);
+            h = domains.putIfAbsent(domain, newHealth);
+            if (h == null) {
+                h = newHealth;
+            }
+        }
+        return h;
+    }
+
+    public static final class Health {
+
+        private final String domain;
+
+        private State state;
+        private int failures;
+        private int brokenPages;
+        private long openTime;
+        private long openedAt;
+        private long probeStartedAt;
+
+        private double latency;
+        private double errorRate;
+        private double brokenPageRate;
+
+        Health(String domain) {
+            this.domain = domain;
+            this.state = State.CLOSED;
+            this.openTime = MIN_OPEN_TIME;
+        }
+
+        public String getDomain() {
+            return domain;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * Moving average of the page request latency, in milliseconds.
+         */
+        public synchronized long getLatency() {
+            return (long) latency;
+        }
+
+        public synchronized double getErrorRate() {
+            return errorRate;
+        }
+
+        public synchronized double getBrokenPageRate() {
+            return brokenPageRate;
+        }
+
+        public synchronized double score() {
+            if (state == State.OPEN) {
+                return 0;
+            }
+            // 5 seconds of latency halves the score
+            double latencyFactor = 1.0 / (1.0 + latency / 5000.0);
+            return (1.0 - errorRate) * (1.0 - brokenPageRate / 2) * latencyFactor;
+        }
+
+        synchronized boolean allowRequest(long now) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt >= openTime) {
+                        state = State.HALF_OPEN;
+                        probeStartedAt = now;
+                        return true;
+                    }
+                    return false;
+                default:
+                    // a probe is in flight, unless it never reported back
+                    if (now - probeStartedAt >= PROBE_TIMEOUT) {
+                        probeStartedAt = now;
+                        return true;
+                    }
+                    return false;
+            }
+        }
+
+        synchronized void success(long latency) {
+            this.latency = average(this.latency, latency);
+            errorRate = average(errorRate, 0);
+            failures = 0;
+
+            if (state == State.HALF_OPEN && brokenPages < BROKEN_PAGES_THRESHOLD) {
+                close();
+            }
+        }
+
+        synchronized void failure(long now, long latency) {
+            this.latency = average(this.latency, latency);
+            errorRate = average(errorRate, 1);
+            failures++;
+
+            if (state == State.HALF_OPEN || failures >= FAILURES_THRESHOLD) {
+                open(now);
+            }
+        }
+
+        synchronized void parsed(long now, boolean parsed) {
+            brokenPageRate = average(brokenPageRate, parsed ? 0 : 1);
+
+            if (parsed) {
+                brokenPages = 0;
+                if (state == State.HALF_OPEN) {
+                    close();
+                }
+            } else {
+                brokenPages++;
+                if (brokenPages >= BROKEN_PAGES_THRESHOLD && state != State.OPEN) {
+                    open(now);
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "Health(" + domain + ", state: " + state + ", score: " + String.format("%.2f", score()) + ", latency: " + (long) latency + "ms" +
+                    ", errors: " + String.format("%.2f", errorRate) + ", brokenPages: " + String.format("%.2f", brokenPageRate) + ")";
+        }
+
+        private void open(long now) {
+            if (state == State.HALF_OPEN) {
+                // the probe failed, wait longer this time
+                openTime = Math.min(openTime * 2, MAX_OPEN_TIME);
+            }
+            state = State.OPEN;
+            openedAt = now;
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            openTime = MIN_OPEN_TIME;
+            failures = 0;
+            brokenPages = 0;
+        }
+
+        private static double average(double avg, double sample) {
+            return avg + ALPHA * (sample - avg);
+        }
+    }
+}
@@ -23,13 +23,18 @@ import rx.Observable;
 import rx.functions.Action1;
 import rx.subjects.PublishSubject;
 
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author gubatron
@@ -40,15 +45,55 @@ public class SearchManagerImpl implements SearchManager {
     private static final Logger LOG = Logger.getLogger(SearchManagerImpl.class);
 
     private static final int DEFAULT_NTHREADS = 6;
+    private static final int DEFAULT_MAX_TASKS_PER_DOMAIN = 2;
 
+    private static final long RESULTS_RETENTION = 5 * 60 * 1000; // 5 minutes after the search ends
+    private static final long RESULTS_IDLE_TIMEOUT = 30 * 60 * 1000; // 30 minutes without results, if it never ends
+
+    private final DomainFairQueue queue;
     private final ExecutorService executor;
-    private final List<SearchTask> tasks;
+    private final DomainPagesExecutor pagesExecutor;
+    private final TaskRegistry tasks;
     private final PublishSubject<SearchManagerSignal> subject;
+    private final SearchResultDeduplicator deduplicator;
+    private final SearchResultRanker ranker;
+    private final SearchResultStore store;
+    private final ConcurrentMap<Long, Long> retainedUntil; // tokens with ranked or stored results, and when to release them
+
+    private volatile boolean deduplicateResults;
+    private volatile boolean rankResults;
+    private volatile boolean storeResults;
+
+    /**
+     * @param nThreads           number of worker threads
+     * @param maxTasksPerDomain  maximum number of tasks of the same domain running at the
+     *                           same time, idle workers can still pick up crawls over this
+     *                           limit when there is nothing else to do
+     */
+    public SearchManagerImpl(int nThreads, int maxTasksPerDomain) {
+        if (maxTasksPerDomain < 1) {
+            throw new IllegalArgumentException("Max tasks per domain must be >= 1");
+        }
 
-    public SearchManagerImpl(int nThreads) {
-        this.executor = new ThreadPool("SearchManager", nThreads, nThreads, 1L, new PriorityBlockingQueue<Runnable>(), true);
-        this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
+        this.queue = new DomainFairQueue(maxTasksPerDomain);
+        ThreadPool pool = new ThreadPool("SearchManager", nThreads, nThreads, 1L, queue, true);
+        // all tasks must go through the queue, otherwise the first ones would bypass the scheduling
+        pool.prestartAllCoreThreads();
+        this.executor = pool;
+        this.pagesExecutor = new DomainPagesExecutor(ThreadPool.newThreadPool("SearchPages", true), maxTasksPerDomain);
+        this.tasks = new TaskRegistry();
         this.subject = PublishSubject.create();
+        this.deduplicator = new SearchResultDeduplicator();
+        this.ranker = new SearchResultRanker();
+        this.store = new SearchResultStore();
+        this.retainedUntil = new ConcurrentHashMap<Long, Long>();
+        this.deduplicateResults = false;
+        this.rankResults = false;
+        this.storeResults = false;
+    }
+
+    public SearchManagerImpl(int nThreads) {
+        this(nThreads, DEFAULT_MAX_TASKS_PER_DOMAIN);
     }
 
     public SearchManagerImpl() {
@@ -60,6 +105,91 @@ public class SearchManagerImpl implements SearchManager {
         return subject;
     }
 
+    public boolean isDeduplicateResults() {
+        return deduplicateResults;
+    }
+
+    /**
+     * When enabled the results of a token already sent, like the same torrent found
+     * by several engines, are not sent again, and a duplicate with more seeds is sent
+     * as a new result. Disabled by default, every result is sent as found.
+     *
+     * @see SearchResultDeduplicator
+     */
+    public void setDeduplicateResults(boolean deduplicateResults) {
+        this.deduplicateResults = deduplicateResults;
+    }
+
+    public boolean isRankResults() {
+        return rankResults;
+    }
+
+    /**
+     * When enabled the results of each token are ranked by relevance to the query as
+     * they are sent, see {@link #getTopResults(long, int)}. Disabled by default, and
+     * disabling it releases all the rankings.
+     */
+    public void setRankResults(boolean rankResults) {
+        this.rankResults = rankResults;
+        if (!rankResults) {
+            ranker.clear();
+        }
+    }
+
+    public boolean isStoreResults() {
+        return storeResults;
+    }
+
+    /**
+     * When enabled the results of each token are kept as they are sent, up to
+     * {@link SearchResultStore#MAX_ROWS_PER_TOKEN}, for {@link #queryResults(long, SearchResultStore.Query)}.
+     * Disabled by default, and disabling it releases all the stored results.
+     */
+    public void setStoreResults(boolean storeResults) {
+        this.storeResults = storeResults;
+        if (!storeResults) {
+            store.clear();
+        }
+    }
+
+    /**
+     * Same as {@link #observable()}, but the results of each token are merged over
+     * the given time window or until there are {@code maxSize} of them.
+     *
+     * @see BatchResultsOperator
+     */
+    public Observable<SearchManagerSignal> observable(long window, TimeUnit unit, int maxSize) {
+        return subject.lift(new BatchResultsOperator(window, unit, maxSize));
+    }
+
+    /**
+     * Returns up to n of the results of the token sent so far, the most relevant
+     * to the query first, or none if ranking is not enabled. The ranking of a token
+     * is released when the token is stopped, 5 minutes after its search ends, or
+     * after 30 minutes without new results.
+     *
+     * @see SearchResultRanker
+     */
+    public List<SearchResult> getTopResults(long token, int n) {
+        return ranker.top(token, n);
+    }
+
+    /**
+     * Returns the page of the results of the token sent so far that match the query,
+     * or none if storing results is not enabled. Like the ranking, the results of a
+     * token are released when the token is stopped, 5 minutes after its search ends,
+     * or after 30 minutes without new results.
+     *
+     * @see SearchResultStore
+     */
+    public List<SearchResult> queryResults(long token, SearchResultStore.Query q) {
+        return store.query(token, q);
+    }
+
+    public int countResults(long token, SearchResultStore.Query q) {
+        return store.count(token, q);
+    }
+
     @Override
     public void perform(final SearchPerformer performer) {
         if (performer != null) {
@@ -75,7 +205,20 @@ public class SearchManagerImpl implements SearchManager {
                 }
             });
 
-            SearchTask task = new PerformTask(this, performer, getOrder(performer.getToken()));
+            if (performer instanceof PagedWebSearchPerformer) {
+                PagedWebSearchPerformer p = (PagedWebSearchPerformer) performer;
+                p.setPageExecutor(pagesExecutor.forDomain(p.getDomainName()));
+            }
+
+            expireResults();
+
+            if (rankResults && performer instanceof WebSearchPerformer) {
+                ranker.query(performer.getToken(), ((WebSearchPerformer) performer).getKeywords());
+                // the ranking exists from now on, even if no result ever comes
+                retainedUntil.put(performer.getToken(), System.currentTimeMillis() + RESULTS_IDLE_TIMEOUT);
+            }
+
+            SearchTask task = new PerformTask(this, performer, tasks.order(performer.getToken()));
 
             submitSearchTask(task);
         } else {
@@ -101,6 +244,7 @@ public class SearchManagerImpl implements SearchManager {
     @Override
     public boolean shutdown(long timeout, TimeUnit unit) {
         stop();
+        pagesExecutor.shutdown();
         executor.shutdown();
         try {
             if (!executor.awaitTermination(timeout, unit)) {
@@ -132,6 +276,11 @@ public class SearchManagerImpl implements SearchManager {
     }
 
     protected void onFinished(long token) {
+        deduplicator.clear(token);
+        if (retainedUntil.containsKey(token)) {
+            retainedUntil.put(token, System.currentTimeMillis() + RESULTS_RETENTION);
+        }
+        expireResults();
         try {
             subject.onNext(new SearchManagerSignal.End(token));
         } catch (Throwable e) {
@@ -142,7 +291,7 @@ public class SearchManagerImpl implements SearchManager {
     private void crawl(SearchPerformer performer, CrawlableSearchResult sr) {
         if (performer != null && !performer.isStopped()) {
             try {
-                SearchTask task = new CrawlTask(this, performer, sr, getOrder(performer.getToken()));
+                SearchTask task = new CrawlTask(this, performer, sr, tasks.order(performer.getToken()));
                 submitSearchTask(task);
             } catch (Throwable e) {
                 LOG.warn("Error scheduling crawling of search result: " + sr);
@@ -153,51 +302,37 @@ public class SearchManagerImpl implements SearchManager {
     }
 
     private void stopTasks(long token) {
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (token == -1L || task.getToken() == token) {
-                    task.stopSearch();
-                }
-            }
+        if (token == -1L) {
+            tasks.stopAll();
+            retainedUntil.clear();
+            ranker.clear();
+            store.clear();
+        } else {
+            tasks.stop(token);
+            retainedUntil.remove(token);
+            ranker.clear(token);
+            store.clear(token);
         }
     }
 
-    private void checkIfFinished(SearchPerformer performer) {
-        SearchTask pendingTask = null;
-
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext() && pendingTask == null) {
-                SearchTask task = it.next();
-                if (task.getToken() == performer.getToken() && !task.isStopped()) {
-                    pendingTask = task;
-                }
-
-                if (task.isStopped()) {
-                    it.remove();
-                }
+    /**
+     * Releases the results kept for the tokens whose time is up, finished or idle.
+     */
+    private void expireResults() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Long> e : retainedUntil.entrySet()) {
+            if (e.getValue() < now && retainedUntil.remove(e.getKey(), e.getValue())) {
+                ranker.clear(e.getKey());
+                store.clear(e.getKey());
             }
         }
-
-        if (pendingTask == null) {
-            onFinished(performer.getToken());
-        }
     }
 
-    private int getOrder(long token) {
-        int order = 0;
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (task.getToken() == token) {
-                    order = order + 1;
-                }
-            }
+    private void taskFinished(SearchTask task) {
+        queue.release(task);
+        if (tasks.remove(task)) {
+            onFinished(task.getToken());
         }
-        return order;
     }
 
     private void performerOnResults(SearchPerformer performer, List<? extends SearchResult> results) {
@@ -217,7 +352,21 @@ public class SearchManagerImpl implements SearchManager {
             }
         }
 
+        if (deduplicateResults && !list.isEmpty()) {
+            list = deduplicator.filter(performer.getToken(), list);
+        }
+
         if (!list.isEmpty()) {
+            if (rankResults) {
+                String domain = performer instanceof WebSearchPerformer ? ((WebSearchPerformer) performer).getDomainName() : null;
+                ranker.add(performer.getToken(), domain, list);
+            }
+            if (storeResults) {
+                store.add(performer.getToken(), list);
+            }
+            if (rankResults || storeResults) {
+                retainedUntil.put(performer.getToken(), System.currentTimeMillis() + RESULTS_IDLE_TIMEOUT);
+            }
             onResults(performer, list);
         }
     }
@@ -227,11 +376,15 @@ public class SearchManagerImpl implements SearchManager {
         protected final SearchManagerImpl manager;
         protected final SearchPerformer performer;
         private final int order;
+        private final String domain;
+        private final boolean crawl;
 
-        public SearchTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
+        public SearchTask(SearchManagerImpl manager, SearchPerformer performer, int order, boolean crawl) {
             this.manager = manager;
             this.performer = performer;
             this.order = order;
+            this.domain = performer instanceof WebSearchPerformer ? ((WebSearchPerformer) performer).getDomainName() : "";
+            this.crawl = crawl;
             this.setName(performer.getClass().getName() + "-SearchTask");
         }
 
@@ -239,6 +392,14 @@ public class SearchManagerImpl implements SearchManager {
             return performer.getToken();
         }
 
+        public String getDomain() {
+            return domain;
+        }
+
+        public boolean isCrawl() {
+            return crawl;
+        }
+
         public boolean isStopped() {
             return performer.isStopped();
         }
@@ -256,21 +417,23 @@ public class SearchManagerImpl implements SearchManager {
     private static final class PerformTask extends SearchTask {
 
         public PerformTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
-            super(manager, performer, order);
+            super(manager, performer, order, false);
         }
 
         @Override
         public void run() {
             try {
                 if (!isStopped()) {
-                    performer.perform();
+                    if (SearchHealthRegistry.instance().allowRequest(getDomain())) {
+                        performer.perform();
+                    } else {
+                        LOG.info("Skipping search, domain circuit is open: " + getDomain());
+                    }
                 }
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
-                }
+                manager.taskFinished(this);
             }
         }
     }
@@ -280,7 +443,7 @@ public class SearchManagerImpl implements SearchManager {
         private final CrawlableSearchResult sr;
 
         public CrawlTask(SearchManagerImpl manager, SearchPerformer performer, CrawlableSearchResult sr, int order) {
-            super(manager, performer, order);
+            super(manager, performer, order, true);
             this.sr = sr;
         }
 
@@ -293,9 +456,496 @@ public class SearchManagerImpl implements SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
+                manager.taskFinished(this);
+            }
+        }
+    }
+
+    /**
+     * Keeps the in flight tasks grouped by search token, so that order, completion
+     * and stop operations only touch the tasks of the given token and never
+     * contend with the searches of other tokens.
+     */
+    private static final class TaskRegistry {
+
+        private final ConcurrentMap<Long, TokenTasks> tokens;
+
+        public TaskRegistry() {
+            this.tokens = new ConcurrentHashMap<Long, TokenTasks>();
+        }
+
+        public void add(SearchTask task) {
+            long token = task.getToken();
+            while (true) {
+                TokenTasks t = tokens.get(token);
+                if (t == null) {
+                    TokenTasks newTasks = new TokenTasks();
+                    t = tokens.putIfAbsent(token, newTasks);
+                    if (t == null) {
+                        t = newTasks;
+                    }
+                }
+
+                if (t.add(task)) {
+                    return;
+                }
+
+                // the token just finished, make room for a new group
+                tokens.remove(token, t);
+            }
+        }
+
+        /**
+         * Returns true if this was the last pending task of the token, in
+         * which case the token is no longer tracked.
+         */
+        public boolean remove(SearchTask task) {
+            long token = task.getToken();
+            TokenTasks t = tokens.get(token);
+            if (t != null && t.remove(task)) {
+                tokens.remove(token, t);
+                return true;
+            }
+            return false;
+        }
+
+        public int order(long token) {
+            TokenTasks t = tokens.get(token);
+            return t != null ? t.pending.get() : 0;
+        }
+
+        public void stop(long token) {
+            TokenTasks t = tokens.get(token);
+            if (t != null) {
+                t.stop();
+            }
+        }
+
+        public void stopAll() {
+            for (TokenTasks t : tokens.values()) {
+                t.stop();
+            }
+        }
+
+        public boolean isEmpty() {
+            return tokens.isEmpty();
+        }
+    }
+
+    private static final class TokenTasks {
+
+        private final Set<SearchTask> tasks;
+        private final AtomicInteger pending;
+
+        private boolean finished;
+
+        public TokenTasks() {
+            this.tasks = Collections.newSetFromMap(new ConcurrentHashMap<SearchTask, Boolean>());
+            this.pending = new AtomicInteger();
+        }
+
+        public synchronized boolean add(SearchTask task) {
+            if (finished) {
+                return false;
+            }
+            if (tasks.add(task)) {
+                pending.incrementAndGet();
+            }
+            return true;
+        }
+
+        public synchronized boolean remove(SearchTask task) {
+            if (finished || !tasks.remove(task)) {
+                return false;
+            }
+            pending.decrementAndGet();
+
+            for (SearchTask t : tasks) {
+                if (!t.isStopped()) {
+                    return false;
+                }
+            }
+
+            // only stopped tasks left (if any), they don't count as pending work
+            finished = true;
+            tasks.clear();
+            pending.set(0);
+
+            return true;
+        }
+
+        public void stop() {
+            // iterating the concurrent set is safe without holding the lock
+            for (SearchTask t : tasks) {
+                t.stopSearch();
+            }
+        }
+    }
+
+    /**
+     * Runs the concurrent page fetches of the paged performers, with no more than the
+     * limit of tasks per domain of the manager in flight for a single domain, across
+     * all the searches. Submitting a page over the limit waits for a slot of the domain.
+     */
+    private static final class DomainPagesExecutor {
+
+        private final ExecutorService pool;
+        private final int maxPagesPerDomain;
+        private final ConcurrentMap<String, Semaphore> permits;
+
+        public DomainPagesExecutor(ExecutorService pool, int maxPagesPerDomain) {
+            this.pool = pool;
+            this.maxPagesPerDomain = maxPagesPerDomain;
+            this.permits = new ConcurrentHashMap<String, Semaphore>();
+        }
+
+        public Executor forDomain(String domain) {
+            Semaphore s = permits.get(domain);
+            if (s == null) {
+                Semaphore newPermits = new Semaphore(maxPagesPerDomain);
+                s = permits.putIfAbsent(domain, newPermits);
+                if (s == null) {
+                    s = newPermits;
+                }
+            }
+
+            final Semaphore domainPermits = s;
+
+            return new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    try {
+                        domainPermits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+
+                    try {
+                        pool.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    command.run();
+                                } finally {
+                                    domainPermits.release();
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        domainPermits.release();
+                        throw e;
+                    }
+                }
+            };
+        }
+
+        public void shutdown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Work queue of the search thread pool. Tasks are grouped by token and domain and
+     * handed out in round-robin between the groups, never running more than the
+     * configured number of tasks of a single domain at once. A worker that would
+     * otherwise be idle is allowed to steal a queued crawl over that limit.
+     * <p/>
+     * Inside a group the tasks keep the natural order of {@link SearchTask}.
+     */
+    private static final class DomainFairQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+        private final int maxTasksPerDomain;
+
+        private final ReentrantLock lock;
+        private final Condition available;
+
+        private final Map<String, Queue<Runnable>> groups;
+        private final Deque<String> ring;
+        private final Map<String, Integer> running;
+        private int count;
+
+        public DomainFairQueue(int maxTasksPerDomain) {
+            this.maxTasksPerDomain = maxTasksPerDomain;
+            this.lock = new ReentrantLock();
+            this.available = lock.newCondition();
+            this.groups = new HashMap<String, Queue<Runnable>>();
+            this.ring = new ArrayDeque<String>();
+            this.running = new HashMap<String, Integer>();
+        }
+
+        @Override
+        public boolean offer(Runnable r) {
+            if (r == null) {
+                throw new NullPointerException();
+            }
+
+            String key = groupKey(r);
+
+            lock.lock();
+            try {
+                Queue<Runnable> q = groups.get(key);
+                if (q == null) {
+                    q = new PriorityQueue<Runnable>();
+                    groups.put(key, q);
+                    ring.addLast(key);
+                }
+                q.add(r);
+                count++;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            return true;
+        }
+
+        @Override
+        public void put(Runnable r) {
+            offer(r);
+        }
+
+        @Override
+        public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+            return offer(r);
+        }
+
+        @Override
+        public Runnable poll() {
+            lock.lock();
+            try {
+                return dequeue();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                Runnable r;
+                while ((r = dequeue()) == null) {
+                    available.await();
+                }
+                return r;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            lock.lockInterruptibly();
+            try {
+                Runnable r;
+                while ((r = dequeue()) == null) {
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+                return r;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Must be called once a task handed out by this queue is done.
+         */
+        public void release(Runnable r) {
+            if (!(r instanceof SearchTask)) {
+                return;
+            }
+
+            String domain = ((SearchTask) r).getDomain();
+
+            lock.lock();
+            try {
+                Integer n = running.get(domain);
+                if (n != null) {
+                    if (n > 1) {
+                        running.put(domain, n - 1);
+                    } else {
+                        running.remove(domain);
+                    }
+                    // a domain slot is free, a waiting worker may have work now
+                    available.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable peek() {
+            lock.lock();
+            try {
+                for (String key : ring) {
+                    Queue<Runnable> q = groups.get(key);
+                    if (isEligible(q.peek(), false)) {
+                        return q.peek();
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Runnable)) {
+                return false;
+            }
+
+            String key = groupKey((Runnable) o);
+
+            lock.lock();
+            try {
+                Queue<Runnable> q = groups.get(key);
+                if (q != null && q.remove(o)) {
+                    count--;
+                    if (q.isEmpty()) {
+                        groups.remove(key);
+                        ring.remove(key);
+                    }
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            if (c == this) {
+                throw new IllegalArgumentException();
+            }
+
+            lock.lock();
+            try {
+                int n = 0;
+                Iterator<String> it = ring.iterator();
+                while (it.hasNext() && n < maxElements) {
+                    String key = it.next();
+                    Queue<Runnable> q = groups.get(key);
+                    while (!q.isEmpty() && n < maxElements) {
+                        c.add(q.poll());
+                        count--;
+                        n++;
+                    }
+                    if (q.isEmpty()) {
+                        groups.remove(key);
+                        it.remove();
+                    }
                 }
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            lock.lock();
+            try {
+                // weakly consistent snapshot, as the one of the JDK queues
+                List<Runnable> snapshot = new ArrayList<Runnable>(count);
+                for (Queue<Runnable> q : groups.values()) {
+                    snapshot.addAll(q);
+                }
+                return Collections.unmodifiableList(snapshot).iterator();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // must be called holding the lock
+        private Runnable dequeue() {
+            Runnable r = dequeue(false);
+            if (r == null) {
+                // nothing under the domain limits, let this idle worker steal a crawl
+                r = dequeue(true);
+            }
+            return r;
+        }
+
+        private Runnable dequeue(boolean steal) {
+            int n = ring.size();
+            for (int i = 0; i < n; i++) {
+                String key = ring.pollFirst();
+                Queue<Runnable> q = groups.get(key);
+
+                if (isEligible(q.peek(), steal)) {
+                    Runnable r = q.poll();
+                    count--;
+
+                    if (q.isEmpty()) {
+                        groups.remove(key);
+                    } else {
+                        ring.addLast(key);
+                    }
+
+                    if (r instanceof SearchTask) {
+                        String domain = ((SearchTask) r).getDomain();
+                        Integer running = this.running.get(domain);
+                        this.running.put(domain, running != null ? running + 1 : 1);
+                    }
+
+                    return r;
+                }
+
+                ring.addLast(key);
+            }
+
+            return null;
+        }
+
+        private boolean isEligible(Runnable r, boolean steal) {
+            if (!(r instanceof SearchTask)) {
+                return true;
+            }
+
+            SearchTask task = (SearchTask) r;
+
+            if (steal) {
+                return task.isCrawl();
+            }
+
+            Integer n = running.get(task.getDomain());
+            return n == null || n < maxTasksPerDomain;
+        }
+
+        private static String groupKey(Runnable r) {
+            if (r instanceof SearchTask) {
+                SearchTask task = (SearchTask) r;
+                return task.getToken() + ":" + task.getDomain();
+            } else {
+                return "";
             }
         }
     }
@@ -25,6 +25,9 @@ import com.frostwire.regex.Matcher;
  * Instead of using the groups() that reference the original HTML strings,
  * we just make copies of those substrings with this search matcher everytime
  * we invoke group(), this way the original HTML can be dereferenced and garbage collected.
+ * <p/>
+ * For the fields a result doesn't keep as text, use the offsets, {@link #groupView(String)}
+ * or {@link #groupInt(String, int)}, none of them create a string.
  * 
  * @author gubatron
  * @author aldenml
@@ -46,6 +49,13 @@ public final class SearchMatcher {
         return matcher.find();
     }
 
+    /**
+     * Offset after the last character of the current match.
+     */
+    public int end() {
+        return matcher.end();
+    }
+
     public String group(int group) {
         return copy(matcher.group(group));
     }
@@ -54,7 +64,143 @@ public final class SearchMatcher {
         return copy(matcher.group(group));
     }
     
+    /**
+     * Offset of the first character of the group, -1 if the group didn't take part in the match.
+     */
+    public int start(int group) {
+        return matcher.start(group);
+    }
+
+    public int start(String group) {
+        return matcher.start(group);
+    }
+
+    /**
+     * Offset after the last character of the group, -1 if the group didn't take part in the match.
+     */
+    public int end(int group) {
+        return matcher.end(group);
+    }
+
+    public int end(String group) {
+        return matcher.end(group);
+    }
+
+    /**
+     * Returns the group as a view over the page, without copying it. The view is only
+     * valid until the next call to {@link #find()}, use toString() to keep the text.
+     */
+    public CharSequence groupView(int group) {
+        return view(matcher.start(group), matcher.end(group));
+    }
+
+    public CharSequence groupView(String group) {
+        return view(matcher.start(group), matcher.end(group));
+    }
+
+    /**
+     * Parses the group as a decimal int, the same way {@link Integer#parseInt(String)}
+     * does but without creating a string, returning the default value if the group is
+     * missing or not a number.
+     */
+    public int groupInt(int group, int defaultValue) {
+        return (int) parse(matcher.start(group), matcher.end(group), Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+    }
+
+    public int groupInt(String group, int defaultValue) {
+        return (int) parse(matcher.start(group), matcher.end(group), Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+    }
+
+    public long groupLong(int group, long defaultValue) {
+        return parse(matcher.start(group), matcher.end(group), Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+    }
+
+    public long groupLong(String group, long defaultValue) {
+        return parse(matcher.start(group), matcher.end(group), Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+    }
+
     private String copy(String str) {
         return new String(str.toCharArray());
     }
+
+    private CharSequence view(int start, int end) {
+        return start >= 0 ? new View(matcher.input(), start, end) : null;
+    }
+
+    private long parse(int start, int end, long min, long max, long defaultValue) {
+        if (start < 0 || start >= end) {
+            return defaultValue;
+        }
+
+        CharSequence s = matcher.input();
+        boolean negative = false;
+        int i = start;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end) {
+                return defaultValue;
+            }
+        }
+
+        // accumulated negatively, as the negative range is the larger one
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        while (i < end) {
+            int digit = Character.digit(s.charAt(i++), 10);
+            if (digit < 0 || result < multmin) {
+                return defaultValue;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return defaultValue;
+            }
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    /**
+     * Read only window over a region of the matched input.
+     */
+    private static final class View implements CharSequence {
+
+        private final CharSequence input;
+        private final int start;
+        private final int end;
+
+        public View(CharSequence input, int start, int end) {
+            this.input = input;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + (end - start));
+            }
+            return input.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > this.end - this.start || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + (this.end - this.start));
+            }
+            return new View(input, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return input.subSequence(start, end).toString();
+        }
+    }
 }
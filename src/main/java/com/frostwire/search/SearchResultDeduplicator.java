@@ -0,0 +1,209 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Drops the results already sent for the same token, as when the same torrent comes
+ * back from several engines and again from crawls.
+ * <p/>
+ * Torrents are identified by infohash (plus the file path or name for the crawled
+ * files and albums of a torrent), everything else by a 64 bit fingerprint of its
+ * name, details url, source and file name. Only the fingerprint and the best seed
+ * count seen are kept, in an open addressing table of primitives per token, so
+ * searches with thousands of results use a few KB.
+ * <p/>
+ * A duplicate with more seeds than the one already sent is let through, so clients
+ * keeping the best result per infohash get the update.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultDeduplicator {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ConcurrentMap<Long, Table> tokens;
+
+    public SearchResultDeduplicator() {
+        this.tokens = new ConcurrentHashMap<Long, Table>();
+    }
+
+    /**
+     * Returns the results not sent before for this token, in the same order.
+     */
+    public List<SearchResult> filter(long token, List<? extends SearchResult> results) {
+        Table t = tokens.get(token);
+        if (t == null) {
+            Table newTable = new Table();
+            t = tokens.putIfAbsent(token, newTable);
+            if (t == null) {
+                t = newTable;
+            }
+        }
+
+        List<SearchResult> list = new ArrayList<SearchResult>(results.size());
+        synchronized (t) {
+            for (SearchResult sr : results) {
+                int seeds = sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getSeeds() : 0;
+                if (t.add(fingerprint(sr), seeds)) {
+                    list.add(sr);
+                }
+            }
+        }
+
+        return list;
+    }
+
+    public void clear(long token) {
+        tokens.remove(token);
+    }
+
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * 64 bit identity of a search result, equal for the same content coming
+     * from different engines whenever there is an infohash to tell.
+     */
+    public static long fingerprint(SearchResult sr) {
+        long h = FNV_OFFSET;
+
+        String infohash = sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getHash() : null;
+        if (infohash != null && infohash.length() > 0) {
+            h = hash(h, infohash, true);
+            if (sr instanceof TorrentItemSearchResult) {
+                h = hash(h, ((TorrentItemSearchResult) sr).getFilePath(), false);
+            } else if (sr instanceof CrawledSearchResult) {
+                h = hash(h, sr.getDisplayName(), false);
+            }
+        } else {
+            h = hash(h, sr.getDisplayName(), false);
+            h = hash(h, sr.getDetailsUrl(), false);
+            h = hash(h, sr.getSource(), false);
+            if (sr instanceof FileSearchResult) {
+                h = hash(h, ((FileSearchResult) sr).getFilename(), false);
+            }
+        }
+
+        return mix(h);
+    }
+
+    private static long hash(long h, String s, boolean ignoreCase) {
+        if (s != null) {
+            int n = s.length();
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (ignoreCase) {
+                    c = Character.toLowerCase(c);
+                }
+                h = (h ^ c) * FNV_PRIME;
+            }
+        }
+        // field separator, so that ("ab", "c") and ("a", "bc") differ
+        return (h ^ 0xff) * FNV_PRIME;
+    }
+
+    // final avalanche of murmur3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Open addressing hash table of fingerprint to best seed count.
+     * The fingerprint 0 is reserved to mark the empty slots.
+     */
+    private static final class Table {
+
+        private long[] keys;
+        private int[] seeds;
+        private int size;
+
+        public Table() {
+            this.keys = new long[64];
+            this.seeds = new int[64];
+        }
+
+        /**
+         * Returns true if the fingerprint is new, or it has more seeds than before.
+         */
+        public boolean add(long key, int s) {
+            if (key == 0) {
+                key = 1;
+            }
+
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == key) {
+                    if (s > seeds[i]) {
+                        seeds[i] = s;
+                        return true;
+                    }
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            seeds[i] = s;
+            size++;
+
+            if (size * 4 > keys.length * 3) {
+                resize();
+            }
+
+            return true;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldSeeds = seeds;
+
+            keys = new long[oldKeys.length * 2];
+            seeds = new int[oldSeeds.length * 2];
+
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                long key = oldKeys[j];
+                if (key != 0) {
+                    int i = (int) key & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = key;
+                    seeds[i] = oldSeeds[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the results of each token ranked by relevance to the query, as they
+ * arrive from the engines and crawls, so that the current top results can be
+ * asked for at any time without sorting everything again.
+ * <p/>
+ * The score of a result is made of how many query words are in its name (and
+ * file path or file name), whether they appear next to each other in the same
+ * order as in the query, its seeds and the health of the engine it came from.
+ * <p/>
+ * Each token keeps up to {@link #MAX_RESULTS_PER_TOKEN} results, the lowest
+ * ranked are dropped past that.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultRanker {
+
+    public static final int MAX_RESULTS_PER_TOKEN = 2000;
+
+    private static final double WORDS_WEIGHT = 0.5;
+    private static final double PHRASE_WEIGHT = 0.2;
+    private static final double SEEDS_WEIGHT = 0.2;
+    private static final double SOURCE_WEIGHT = 0.1;
+
+    // seeds count where the seeds score saturates
+    private static final double MAX_SEEDS_LOG = Math.log(1 + 10000);
+
+    private final ConcurrentMap<Long, Ranking> tokens;
+
+    public SearchResultRanker() {
+        this.tokens = new ConcurrentHashMap<Long, Ranking>();
+    }
+
+    /**
+     * Sets the query of the token, the results added before are not ranked again.
+     */
+    public void query(long token, String keywords) {
+        ranking(token).setQuery(keywords);
+    }
+
+    /**
+     * Adds the results, coming from the given domain, to the ranking of the token.
+     *
+     * @param domain the domain of the engine, used to weight the results by its health, can be null
+     */
+    public void add(long token, String domain, List<? extends SearchResult> results) {
+        double sourceScore = domain != null ? SearchHealthRegistry.instance().score(domain) : 1.0;
+        Ranking r = ranking(token);
+        synchronized (r) {
+            for (SearchResult sr : results) {
+                r.add(sr, sourceScore);
+            }
+        }
+    }
+
+    /**
+     * Returns up to n of the best ranked results of the token, best first.
+     */
+    public List<SearchResult> top(long token, int n) {
+        Ranking r = tokens.get(token);
+        if (r == null || n <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<SearchResult> list = new ArrayList<SearchResult>(Math.min(n, MAX_RESULTS_PER_TOKEN));
+        synchronized (r) {
+            Iterator<Entry> it = r.entries.iterator();
+            while (list.size() < n && it.hasNext()) {
+                list.add(it.next().sr);
+            }
+        }
+        return list;
+    }
+
+    public int size(long token) {
+        Ranking r = tokens.get(token);
+        if (r == null) {
+            return 0;
+        }
+        synchronized (r) {
+            return r.entries.size();
+        }
+    }
+
+    public void clear(long token) {
+        tokens.remove(token);
+    }
+
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Relevance of the text to the query words, from 0 to 1. It's mostly the fraction
+     * of the query words found in the text, and partly the fraction of the consecutive
+     * query words found next to each other in the text.
+     */
+    static double textScore(String[] query, List<String> words) {
+        if (query.length == 0 || words.isEmpty()) {
+            return 0;
+        }
+
+        double found = 0;
+        for (String q : query) {
+            found += wordScore(q, words);
+        }
+        double wordsScore = found / query.length;
+
+        if (query.length == 1) {
+            return wordsScore;
+        }
+
+        int pairs = 0;
+        for (int i = 0; i < query.length - 1; i++) {
+            if (adjacent(query[i], query[i + 1], words)) {
+                pairs++;
+            }
+        }
+        double phraseScore = (double) pairs / (query.length - 1);
+
+        double total = WORDS_WEIGHT + PHRASE_WEIGHT;
+        return (WORDS_WEIGHT * wordsScore + PHRASE_WEIGHT * phraseScore) / total;
+    }
+
+    /**
+     * Lower case words of the text, split at anything that is not a letter or a digit.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<String>();
+        if (text == null) {
+            return words;
+        }
+
+        int n = text.length();
+        int start = -1;
+        for (int i = 0; i <= n; i++) {
+            boolean wordChar = i < n && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar) {
+                if (start == -1) {
+                    start = i;
+                }
+            } else if (start != -1) {
+                words.add(text.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // a whole word counts fully, a word starting with the query word counts half
+    private static double wordScore(String q, List<String> words) {
+        double score = 0;
+        for (String w : words) {
+            if (w.equals(q)) {
+                return 1;
+            }
+            if (score == 0 && w.startsWith(q)) {
+                score = 0.5;
+            }
+        }
+        return score;
+    }
+
+    private static boolean adjacent(String a, String b, List<String> words) {
+        int n = words.size();
+        for (int i = 0; i < n - 1; i++) {
+            if (words.get(i).equals(a) && words.get(i + 1).equals(b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Ranking ranking(long token) {
+        Ranking r = tokens.get(token);
+        if (r == null) {
+            Ranking newRanking = new Ranking();
+            r = tokens.putIfAbsent(token, newRanking);
+            if (r == null) {
+                r = newRanking;
+            }
+        }
+        return r;
+    }
+
+    private static final class Ranking {
+
+        // guarded by this
+        private final TreeSet<Entry> entries;
+        private String[] query;
+        private long seq;
+
+        public Ranking() {
+            this.entries = new TreeSet<Entry>();
+            this.query = new String[0];
+        }
+
+        public synchronized void setQuery(String keywords) {
+            List<String> words = words(keywords);
+            // the same word twice in the query doesn't count twice
+            List<String> unique = new ArrayList<String>(words.size());
+            for (String w : words) {
+                if (!unique.contains(w)) {
+                    unique.add(w);
+                }
+            }
+            query = unique.toArray(new String[unique.size()]);
+        }
+
+        public void add(SearchResult sr, double sourceScore) {
+            List<String> words = words(sr.getDisplayName());
+            if (sr instanceof TorrentItemSearchResult) {
+                words.addAll(words(((TorrentItemSearchResult) sr).getFilePath()));
+            } else if (sr instanceof FileSearchResult) {
+                words.addAll(words(((FileSearchResult) sr).getFilename()));
+            }
+
+            double textScore = textScore(query, words);
+
+            double seedsScore = 0;
+            if (sr instanceof TorrentSearchResult) {
+                int seeds = ((TorrentSearchResult) sr).getSeeds();
+                if (seeds > 0) {
+                    seedsScore = Math.min(1.0, Math.log(1 + seeds) / MAX_SEEDS_LOG);
+                }
+            }
+
+            double score = (WORDS_WEIGHT + PHRASE_WEIGHT) * textScore + SEEDS_WEIGHT * seedsScore + SOURCE_WEIGHT * sourceScore;
+
+            if (entries.size() >= MAX_RESULTS_PER_TOKEN) {
+                if (score <= entries.last().score) {
+                    return;
+                }
+                entries.pollLast();
+            }
+
+            entries.add(new Entry(sr, score, seq++));
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        public final SearchResult sr;
+        public final double score;
+        public final long seq;
+
+        public Entry(SearchResult sr, double score, long seq) {
+            this.sr = sr;
+            this.score = score;
+            this.seq = seq;
+        }
+
+        // best first, and the first to arrive for the same score
+        @Override
+        public int compareTo(Entry o) {
+            int c = Double.compare(o.score, score);
+            if (c == 0) {
+                c = seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+            }
+            return c;
+        }
+    }
+}
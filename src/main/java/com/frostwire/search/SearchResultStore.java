@@ -0,0 +1,473 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.jlibtorrent.TorrentInfo;
+import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
+import com.frostwire.search.torrent.TorrentCrawledSearchResult;
+import com.frostwire.search.torrent.TorrentMetadata;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the results of each token in a compact columnar layout, and answers
+ * paged queries over them, filtered by file type, size range and source, and
+ * sorted by name, size, seeds or creation time.
+ * <p/>
+ * The files of crawled torrents, which are most of the results of a big search,
+ * are kept as a row of primitives plus the file path, sharing one reference to
+ * the parent result and its {@link TorrentMetadata} (or {@link TorrentInfo}).
+ * Their {@link TorrentCrawledSearchResult} objects are created again only for the
+ * rows of the requested page, so they are not the same instances that were added.
+ * Sources and file extensions are stored once per token, as ids.
+ * <p/>
+ * Each token keeps up to {@link #MAX_ROWS_PER_TOKEN} results, the ones arriving
+ * later are not stored. The store doesn't expire anything by itself, the owner
+ * clears the tokens it's done with.
+ * <p/>
+ * Usage: {@code store.query(token, new SearchResultStore.Query().extensions("mp3").sortBy(SortBy.SEEDS).page(0, 50))}
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultStore {
+
+    public enum SortBy {
+        ARRIVAL, NAME, SIZE, SEEDS, CREATION_TIME
+    }
+
+    public static final int MAX_ROWS_PER_TOKEN = 20000;
+
+    private final ConcurrentMap<Long, Table> tokens;
+
+    public SearchResultStore() {
+        this.tokens = new ConcurrentHashMap<Long, Table>();
+    }
+
+    public void add(long token, List<? extends SearchResult> results) {
+        Table t = tokens.get(token);
+        if (t == null) {
+            Table newTable = new Table();
+            t = tokens.putIfAbsent(token, newTable);
+            if (t == null) {
+                t = newTable;
+            }
+        }
+
+        synchronized (t) {
+            for (SearchResult sr : results) {
+                if (t.size >= MAX_ROWS_PER_TOKEN) {
+                    break;
+                }
+                t.add(sr);
+            }
+        }
+    }
+
+    /**
+     * Returns the page of the results of the token matching the query.
+     */
+    public List<SearchResult> query(long token, Query q) {
+        Table t = tokens.get(token);
+        if (t == null) {
+            return Collections.emptyList();
+        }
+
+        synchronized (t) {
+            int[] rows = t.select(q);
+            int from = Math.min(q.offset, rows.length);
+            int to = (int) Math.min((long) from + q.limit, rows.length);
+
+            List<SearchResult> list = new ArrayList<SearchResult>(to - from);
+            for (int i = from; i < to; i++) {
+                list.add(t.get(rows[i]));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Returns the number of results of the token matching the filters of the query,
+     * regardless of its page.
+     */
+    public int count(long token, Query q) {
+        Table t = tokens.get(token);
+        if (t == null) {
+            return 0;
+        }
+
+        synchronized (t) {
+            int n = 0;
+            for (int i = 0; i < t.size; i++) {
+                if (t.matches(i, q)) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    public int size(long token) {
+        Table t = tokens.get(token);
+        if (t == null) {
+            return 0;
+        }
+
+        synchronized (t) {
+            return t.size;
+        }
+    }
+
+    public void clear(long token) {
+        tokens.remove(token);
+    }
+
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Filters, order and page of a query. All the filters are optional.
+     */
+    public static final class Query {
+
+        private Set<String> extensions;
+        private long minSize = Long.MIN_VALUE;
+        private long maxSize = Long.MAX_VALUE;
+        private String source;
+        private SortBy sortBy = SortBy.ARRIVAL;
+        private boolean descending;
+        private int offset = 0;
+        private int limit = Integer.MAX_VALUE;
+
+        /**
+         * Only the files with one of these extensions, case insensitive and without the dot.
+         */
+        public Query extensions(String... extensions) {
+            this.extensions = new HashSet<String>();
+            for (String ext : extensions) {
+                this.extensions.add(ext.toLowerCase(Locale.US));
+            }
+            return this;
+        }
+
+        /**
+         * Only the results with a size between min and max, both inclusive.
+         */
+        public Query size(long min, long max) {
+            this.minSize = min;
+            this.maxSize = max;
+            return this;
+        }
+
+        public Query source(String source) {
+            this.source = source;
+            return this;
+        }
+
+        public Query sortBy(SortBy sortBy, boolean descending) {
+            this.sortBy = sortBy;
+            this.descending = descending;
+            return this;
+        }
+
+        public Query sortBy(SortBy sortBy) {
+            return sortBy(sortBy, sortBy == SortBy.SIZE || sortBy == SortBy.SEEDS || sortBy == SortBy.CREATION_TIME);
+        }
+
+        public Query page(int offset, int limit) {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("Offset and limit must be >= 0");
+            }
+            this.offset = offset;
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    /**
+     * The parent of the crawled files of a torrent, shared by all its rows.
+     * Only one of the native torrent info and the metadata is set.
+     */
+    private static final class Parent {
+
+        public final TorrentCrawlableSearchResult sr;
+        public final TorrentInfo ti;
+        public final TorrentMetadata md;
+
+        public Parent(TorrentCrawlableSearchResult sr, TorrentInfo ti, TorrentMetadata md) {
+            this.sr = sr;
+            this.ti = ti;
+            this.md = md;
+        }
+    }
+
+    private static final class Table {
+
+        // the id of each distinct source and extension, and the strings by id
+        private final Map<String, Integer> ids;
+        private final List<String> strings;
+        private final Map<Object, Parent> parents; // by torrent info or metadata
+
+        private int size;
+
+        // for crawled torrent files the parent and the file index,
+        // for anything else the result itself and -1
+        private Object[] objects;
+        private int[] fileIndexes;
+        private String[] names; // the file path of crawled files, otherwise the display name
+        private long[] sizes;
+        private int[] seeds;
+        private long[] times;
+        private int[] sources;
+        private int[] extensions;
+
+        public Table() {
+            this.ids = new HashMap<String, Integer>();
+            this.strings = new ArrayList<String>();
+            this.parents = new IdentityHashMap<Object, Parent>();
+
+            int capacity = 64;
+            this.objects = new Object[capacity];
+            this.fileIndexes = new int[capacity];
+            this.names = new String[capacity];
+            this.sizes = new long[capacity];
+            this.seeds = new int[capacity];
+            this.times = new long[capacity];
+            this.sources = new int[capacity];
+            this.extensions = new int[capacity];
+        }
+
+        public void add(SearchResult sr) {
+            if (size == objects.length) {
+                grow();
+            }
+
+            int i = size;
+            String filename;
+
+            if (sr instanceof TorrentCrawledSearchResult) {
+                TorrentCrawledSearchResult tsr = (TorrentCrawledSearchResult) sr;
+                // never ask the metadata for the native torrent info here
+                TorrentMetadata md = tsr.getMetadata();
+                Object key = md != null ? md : tsr.getTorrentInfo();
+                Parent p = parents.get(key);
+                if (p == null) {
+                    p = md != null ? new Parent(tsr.getParent(), null, md) : new Parent(tsr.getParent(), tsr.getTorrentInfo(), null);
+                    parents.put(key, p);
+                }
+                objects[i] = p;
+                fileIndexes[i] = tsr.getFileIndex();
+                names[i] = tsr.getFilePath();
+                filename = tsr.getFilename();
+            } else {
+                objects[i] = sr;
+                fileIndexes[i] = -1;
+                names[i] = sr.getDisplayName();
+                filename = sr instanceof FileSearchResult ? ((FileSearchResult) sr).getFilename() : null;
+            }
+
+            sizes[i] = sr instanceof FileSearchResult ? ((FileSearchResult) sr).getSize() : FileSearchResult.UNKNOWN_SIZE;
+            seeds[i] = sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getSeeds() : 0;
+            times[i] = sr.getCreationTime();
+            sources[i] = id(sr.getSource());
+            extensions[i] = id(extension(filename));
+
+            size++;
+        }
+
+        public SearchResult get(int i) {
+            Object obj = objects[i];
+            if (obj instanceof Parent) {
+                Parent p = (Parent) obj;
+                if (p.md != null) {
+                    return new TorrentCrawledSearchResult(p.sr, p.md, fileIndexes[i], names[i], sizes[i]);
+                }
+                return new TorrentCrawledSearchResult(p.sr, p.ti, fileIndexes[i], names[i], sizes[i]);
+            }
+            return (SearchResult) obj;
+        }
+
+        public boolean matches(int i, Query q) {
+            if (sizes[i] < q.minSize || sizes[i] > q.maxSize) {
+                return false;
+            }
+            if (q.source != null && !q.source.equals(string(sources[i]))) {
+                return false;
+            }
+            if (q.extensions != null) {
+                String ext = string(extensions[i]);
+                if (ext == null || !q.extensions.contains(ext)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the matching rows, in the order of the query.
+         */
+        public int[] select(Query q) {
+            int[] rows = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (matches(i, q)) {
+                    rows[n++] = i;
+                }
+            }
+            rows = Arrays.copyOf(rows, n);
+
+            if (q.sortBy != SortBy.ARRIVAL) {
+                sort(rows, q.sortBy, q.descending);
+            } else if (q.descending) {
+                for (int i = 0, j = n - 1; i < j; i++, j--) {
+                    int tmp = rows[i];
+                    rows[i] = rows[j];
+                    rows[j] = tmp;
+                }
+            }
+
+            return rows;
+        }
+
+        private int compare(int a, int b, SortBy sortBy) {
+            switch (sortBy) {
+                case NAME:
+                    return compareNames(names[a], names[b]);
+                case SIZE:
+                    return sizes[a] < sizes[b] ? -1 : (sizes[a] == sizes[b] ? 0 : 1);
+                case SEEDS:
+                    return seeds[a] < seeds[b] ? -1 : (seeds[a] == seeds[b] ? 0 : 1);
+                case CREATION_TIME:
+                    return times[a] < times[b] ? -1 : (times[a] == times[b] ? 0 : 1);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * Stable merge sort of the rows, so that equal rows stay in arrival order
+         * whatever the direction.
+         */
+        private void sort(int[] rows, SortBy sortBy, boolean descending) {
+            int[] tmp = new int[rows.length];
+            for (int width = 1; width < rows.length; width *= 2) {
+                for (int lo = 0; lo < rows.length - width; lo += 2 * width) {
+                    int mid = lo + width;
+                    int hi = Math.min(lo + 2 * width, rows.length);
+                    int i = lo;
+                    int j = mid;
+                    int k = lo;
+                    while (i < mid && j < hi) {
+                        int c = compare(rows[i], rows[j], sortBy);
+                        if (descending) {
+                            c = -c;
+                        }
+                        tmp[k++] = c <= 0 ? rows[i++] : rows[j++];
+                    }
+                    while (i < mid) {
+                        tmp[k++] = rows[i++];
+                    }
+                    while (j < hi) {
+                        tmp[k++] = rows[j++];
+                    }
+                    System.arraycopy(tmp, lo, rows, lo, hi - lo);
+                }
+            }
+        }
+
+        private int id(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                strings.add(s);
+                ids.put(s, id);
+            }
+            return id;
+        }
+
+        private String string(int id) {
+            return id != -1 ? strings.get(id) : null;
+        }
+
+        private void grow() {
+            int capacity = objects.length * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            fileIndexes = Arrays.copyOf(fileIndexes, capacity);
+            names = Arrays.copyOf(names, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            seeds = Arrays.copyOf(seeds, capacity);
+            times = Arrays.copyOf(times, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+            extensions = Arrays.copyOf(extensions, capacity);
+        }
+    }
+
+    private static String extension(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot == -1 || dot == filename.length() - 1 || filename.indexOf('/', dot) != -1 || filename.indexOf('\\', dot) != -1) {
+            return null;
+        }
+        return filename.substring(dot + 1).toLowerCase(Locale.US);
+    }
+
+    /**
+     * Case insensitive comparison of the last path component of the names,
+     * without creating substrings.
+     */
+    private static int compareNames(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+
+        int i = nameStart(a);
+        int j = nameStart(b);
+        int n1 = a.length();
+        int n2 = b.length();
+        while (i < n1 && j < n2) {
+            char c1 = Character.toLowerCase(a.charAt(i++));
+            char c2 = Character.toLowerCase(b.charAt(j++));
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (n1 - i) - (n2 - j);
+    }
+
+    private static int nameStart(String path) {
+        return Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.logging.Logger;
+import com.frostwire.util.http.HttpClient;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental version of {@link PerformersHelper#reduceHtml(String, int, int)} followed by
+ * {@link PerformersHelper#searchPageHelper(RegexSearchPerformer, String, int)}, fed with
+ * the bytes of the page as they arrive.
+ * <p/>
+ * The bytes are decoded into a window of text that starts at the prefix cue once it
+ * shows up and ends at the suffix cue. The matches found in the window are passed to
+ * {@link #onMatches(List)} right away, except for those ending too close to the end of
+ * the text received so far, since they could still change with more text. The text
+ * before the last match is dropped, so only a small part of the page is kept in memory,
+ * and the download is cancelled once the suffix cue or the max results are reached.
+ * <p/>
+ * The page is decoded with the charset of its Content-Type header, or UTF-8 if there
+ * is none or it's not supported, the same as when the whole page is read.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+abstract class StreamingRegexExtractor extends HttpClient.HttpClientListenerAdapter {
+
+    private static final Logger LOG = Logger.getLogger(StreamingRegexExtractor.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int LOOKAHEAD = 4 * 1024; // matches ending in the last 4K chars wait for more text
+    private static final int SCAN_STEP = 8 * 1024; // chars received between two scans of the window
+    private static final int MAX_WINDOW = 128 * 1024; // chars kept while nothing matches
+
+    private final RegexSearchPerformer<?> performer;
+    private final String prefixCue;
+    private final String suffixCue;
+    private final int maxResults;
+
+    private CharsetDecoder decoder;
+    private final CharBuffer chars;
+    private final StringBuilder window;
+    private byte[] leftover; // incomplete multi-byte sequence at the end of the last chunk
+
+    private boolean started;
+    private boolean ended;
+    private int cueFrom;
+    private int scanned;
+    private int numResults;
+    private long numBytes;
+    private Throwable error;
+
+    /**
+     * A null prefix (or suffix) cue means the start (or end) of the page.
+     */
+    public StreamingRegexExtractor(RegexSearchPerformer<?> performer, String prefixCue, String suffixCue, int maxResults) {
+        this.performer = performer;
+        this.prefixCue = prefixCue;
+        this.suffixCue = suffixCue;
+        this.maxResults = maxResults;
+
+        this.decoder = newDecoder(UTF_8);
+        this.chars = CharBuffer.allocate(4096);
+        this.window = new StringBuilder(SCAN_STEP + LOOKAHEAD);
+        this.started = prefixCue == null;
+    }
+
+    /**
+     * Called from the thread reading the page, every time there are new matches.
+     */
+    protected abstract void onMatches(List<SearchResult> results);
+
+    public int getNumResults() {
+        return numResults;
+    }
+
+    public long getNumBytes() {
+        return numBytes;
+    }
+
+    /**
+     * The error reported by the http client, if any.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns true if the prefix cue was found, as the page had the expected content.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public void onHeaders(HttpClient httpClient, Map<String, List<String>> headerFields) {
+        if (numBytes == 0 && headerFields != null) {
+            for (Map.Entry<String, List<String>> e : headerFields.entrySet()) {
+                if ("Content-Type".equalsIgnoreCase(e.getKey()) && e.getValue() != null && !e.getValue().isEmpty()) {
+                    decoder = newDecoder(charset(e.getValue().get(0)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onData(HttpClient client, byte[] buffer, int offset, int length) {
+        if (ended) {
+            return;
+        }
+
+        numBytes += length;
+        decode(buffer, offset, length, false);
+        process(false);
+
+        if (ended || performer.isStopped()) {
+            ended = true;
+            client.cancel();
+        }
+    }
+
+    @Override
+    public void onComplete(HttpClient client) {
+        if (!ended) {
+            decode(new byte[0], 0, 0, true);
+            process(true);
+            ended = true;
+        }
+    }
+
+    @Override
+    public void onError(HttpClient client, Throwable e) {
+        error = e;
+    }
+
+    /**
+     * Returns the charset parameter of the content type, or UTF-8.
+     */
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                int eq = param.indexOf('=');
+                if (eq != -1 && "charset".equalsIgnoreCase(param.substring(0, eq).trim())) {
+                    String name = param.substring(eq + 1).trim().replace("\"", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (Throwable e) {
+                        LOG.warn("Unsupported charset " + name + ", using UTF-8");
+                    }
+                }
+            }
+        }
+        return UTF_8;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private void decode(byte[] b, int off, int len, boolean endOfInput) {
+        ByteBuffer in;
+        if (leftover != null) {
+            in = ByteBuffer.allocate(leftover.length + len);
+            in.put(leftover).put(b, off, len);
+            in.flip();
+            leftover = null;
+        } else {
+            in = ByteBuffer.wrap(b, off, len);
+        }
+
+        CoderResult r;
+        do {
+            r = decoder.decode(in, chars, endOfInput);
+            drain();
+        } while (r.isOverflow());
+
+        if (endOfInput) {
+            do {
+                r = decoder.flush(chars);
+                drain();
+            } while (r.isOverflow());
+        } else if (in.hasRemaining()) {
+            leftover = new byte[in.remaining()];
+            in.get(leftover);
+        }
+    }
+
+    private void drain() {
+        window.append(chars.array(), 0, chars.position());
+        chars.clear();
+    }
+
+    private void process(boolean last) {
+        if (!started) {
+            int i = window.indexOf(prefixCue, cueFrom);
+            if (i == -1) {
+                // only keep what could be the beginning of the cue
+                int keep = prefixCue.length() - 1;
+                if (window.length() > keep) {
+                    window.delete(0, window.length() - keep);
+                }
+                cueFrom = 0;
+                return;
+            }
+            window.delete(0, i);
+            started = true;
+            cueFrom = 0;
+            scanned = 0;
+        }
+
+        if (suffixCue != null && !ended) {
+            int i = window.indexOf(suffixCue, cueFrom);
+            if (i != -1) {
+                window.setLength(i);
+                ended = true;
+            } else {
+                cueFrom = Math.max(0, window.length() - suffixCue.length() + 1);
+            }
+        }
+
+        boolean done = last || ended;
+        if (done || window.length() - scanned >= SCAN_STEP) {
+            scan(done);
+        }
+    }
+
+    private void scan(boolean done) {
+        List<SearchResult> results = new LinkedList<SearchResult>();
+
+        SearchMatcher matcher = SearchMatcher.from(performer.getPattern().matcher(window));
+        int limit = done ? window.length() : window.length() - LOOKAHEAD;
+        int consumed = 0;
+        boolean matcherFound;
+
+        do {
+            try {
+                matcherFound = matcher.find();
+            } catch (Throwable t) {
+                matcherFound = false;
+                LOG.error(performer.getPattern().toString() + " has failed.\n" + t.getMessage(), t);
+            }
+
+            if (matcherFound) {
+                if (matcher.end() > limit) {
+                    break; // wait for more text
+                }
+                consumed = matcher.end();
+                SearchResult sr = performer.fromMatcher(matcher);
+                if (sr != null) {
+                    results.add(sr);
+                    numResults++;
+                }
+            }
+        } while (matcherFound && numResults < maxResults && !performer.isStopped());
+
+        if (numResults >= maxResults || performer.isStopped()) {
+            ended = true;
+        }
+
+        if (consumed == 0 && window.length() > MAX_WINDOW) {
+            // nothing matched in a long text, a match can't be that long
+            consumed = window.length() - MAX_WINDOW / 2;
+        }
+        window.delete(0, consumed);
+        cueFrom = Math.max(0, cueFrom - consumed);
+        scanned = window.length();
+
+        if (!results.isEmpty()) {
+            onMatches(results);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Two level crawl cache, usually a small {@link MemoryCrawlCache} in front
+ * of a bigger and persistent {@link DiskCrawlCache}.
+ * <p/>
+ * Writes go to both levels, and data found only in the second level is
+ * promoted to the first one. A {@link DiskCrawlCache} second level writes in
+ * the background, so the crawl threads never wait for the disk here.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TieredCrawlCache implements CrawlCache {
+
+    private final CrawlCache first;
+    private final CrawlCache second;
+
+    public TieredCrawlCache(CrawlCache first, CrawlCache second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Both cache levels are required");
+        }
+        this.first = first;
+        this.second = second;
+    }
+
+    public CrawlCache first() {
+        return first;
+    }
+
+    public CrawlCache second() {
+        return second;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        byte[] data = first.get(key);
+        if (data == null) {
+            data = second.get(key);
+            if (data != null) {
+                first.put(key, data);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        first.put(key, data);
+        second.put(key, data);
+    }
+
+    @Override
+    public void remove(String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        first.clear();
+        second.clear();
+    }
+
+    /**
+     * Returns the size of the second level, since it holds everything the first one does.
+     */
+    @Override
+    public long size() {
+        return second.size();
+    }
+}
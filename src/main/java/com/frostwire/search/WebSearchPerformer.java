@@ -20,9 +20,9 @@ package com.frostwire.search;
 import com.frostwire.logging.Logger;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.MimeDetector;
 import com.frostwire.util.StringUtils;
 import com.frostwire.util.UserAgentGenerator;
-import org.apache.commons.io.FilenameUtils;
 
 import java.io.IOException;
 import java.util.Map;
@@ -39,8 +39,6 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
 
     private static final String DEFAULT_USER_AGENT = UserAgentGenerator.getUserAgent();
 
-    private static final String[] STREAMABLE_EXTENSIONS = new String[] { "mp3", "ogg", "wma", "wmv", "m4a", "aac", "flac", "mp4", "flv", "mov", "mpg", "mpeg", "3gp", "m4v", "webm" };
-
     private final String domainName;
     private final String keywords;
     private final String encodedKeywords;
@@ -114,15 +112,32 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         }
     }
 
-    protected final boolean isStreamable(String filename) {
-        String ext = FilenameUtils.getExtension(filename);
-        for (String s : STREAMABLE_EXTENSIONS) {
-            if (s.equals(ext)) {
-                return true; // fast return
-            }
+    /**
+     * Same as {@link #fetchBytes(String, String, int)} but using a dedicated http client,
+     * so that the download errors are reported to the given listener.
+     */
+    protected final byte[] fetchBytes(String url, String referrer, int timeout, HttpClient.HttpClientListener listener) {
+        if (url.startsWith("htt")) { // http(s)
+            HttpClient c = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
+            c.setListener(listener);
+            return c.getBytes(url, timeout, DEFAULT_USER_AGENT, referrer);
+        } else {
+            return null;
         }
+    }
+
+    /**
+     * Reads the response body of the url with a dedicated http client, passing the bytes
+     * to the listener as they arrive instead of returning the whole page.
+     */
+    protected final void stream(String url, String cookie, Map<String, String> customHeaders, HttpClient.HttpClientListener listener) throws IOException {
+        HttpClient c = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
+        c.setListener(listener);
+        c.stream(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders);
+    }
 
-        return false;
+    protected final boolean isStreamable(String filename) {
+        return MimeDetector.isStreamable(filename);
     }
 
     public String getDomainName() {
@@ -21,14 +21,9 @@ package com.frostwire.search.archiveorg;
 import com.frostwire.search.CrawlPagedWebSearchPerformer;
 import com.frostwire.search.SearchResult;
 import com.frostwire.util.JsonUtils;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author gubatron
@@ -55,16 +50,17 @@ public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<Arch
 
     @Override
     protected List<? extends SearchResult> searchPage(String page) {
-        List<SearchResult> result = new LinkedList<SearchResult>();
-
-        ArchiveorgResponse response = JsonUtils.toObject(page, ArchiveorgResponse.class);
-
-        for (ArchiveorgItem item : response.response.docs) {
-            if (!isStopped()) {
-                ArchiveorgSearchResult sr = new ArchiveorgSearchResult(getDomainName(), item);
-                result.add(sr);
+        final List<SearchResult> result = new LinkedList<SearchResult>();
+
+        JsonUtils.read(page, ArchiveorgItem.class, new JsonUtils.JsonVisitor<ArchiveorgItem>() {
+            @Override
+            public boolean visit(String name, ArchiveorgItem item) {
+                if (item != null) {
+                    result.add(new ArchiveorgSearchResult(getDomainName(), item));
+                }
+                return !isStopped();
             }
-        }
+        }, "response", "docs");
 
         return result;
     }
@@ -98,24 +94,19 @@ public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<Arch
     }
 
     private List<ArchiveorgFile> readFiles(String json) throws Exception {
-        List<ArchiveorgFile> result = new LinkedList<>();
-
-        JsonElement element = new JsonParser().parse(json);
-        JsonObject obj = element.getAsJsonObject();
-        JsonObject files = obj.getAsJsonObject("files");
-
-        Iterator<Map.Entry<String, JsonElement>> it = files.entrySet().iterator();
-
-        while (it.hasNext() && !isStopped()) {
-            Map.Entry<String, JsonElement> e = it.next();
-            String name = e.getKey();
-            String value = e.getValue().toString();
-            ArchiveorgFile file = JsonUtils.toObject(value, ArchiveorgFile.class);
-            if (filter(file)) {
-                file.filename = cleanName(name);
-                result.add(file);
+        final List<ArchiveorgFile> result = new LinkedList<>();
+
+        // each file is bound right from the stream, by name, without a tree of the whole response
+        JsonUtils.read(json, ArchiveorgFile.class, new JsonUtils.JsonVisitor<ArchiveorgFile>() {
+            @Override
+            public boolean visit(String name, ArchiveorgFile file) {
+                if (file != null && filter(file)) {
+                    file.filename = cleanName(name);
+                    result.add(file);
+                }
+                return !isStopped();
             }
-        }
+        }, "files");
 
         return result;
     }
@@ -22,7 +22,6 @@ import com.frostwire.logging.Logger;
 import com.frostwire.search.*;
 import com.frostwire.search.torrent.TorrentRegexSearchPerformer;
 import com.frostwire.util.HtmlManipulator;
-import com.frostwire.regex.Matcher;
 import com.frostwire.regex.Pattern;
 
 import java.util.*;
@@ -36,9 +35,22 @@ public class BitSnoopSearchPerformer extends TorrentRegexSearchPerformer<BitSnoo
     private static final int MAX_RESULTS = 10;
     private static final String REGEX = "(?is)<span class=\"icon cat.*?</span> <a href=\"(.*?)\">.*?<div class=\"torInfo\"";
     private static final String HTML_REGEX = "(?is).*?Help</a>, <a href=\"magnet:\\?xt=urn:btih:([0-9a-fA-F]{40})&dn=(.*?)\" onclick=\".*?Magnet</a>.*?<a href=\"(.*?)\" title=\".*?\" class=\"dlbtn.*?title=\"Torrent Size\"><strong>(.*?)</strong>.*?title=\"Availability\"></span>(.*?)</span></td>.*?<li>Added to index &#8212; (.*?) \\(.{0,50}?\\)</li>.*?";
-    private static final String SCRAPE_REGEX = "(?is)<td .*?<span class=\"filetype .*?</span> (?<filepath>.*?)</td><td align=\"right\"><span class=\"icon.*?\"></span>(?<filesize>.*?) (?<unit>[GBMK]+)</td>";
-    private boolean isScrapingFile = false;
-    private static final Pattern FILE_SCRAPE_PATTERN = Pattern.compile(SCRAPE_REGEX);
+
+    // same fields as HTML_REGEX, which is only used if these are not found
+    private static final HtmlFieldExtractor HTML_FIELDS = new HtmlFieldExtractor()
+            .field("infohash", "Help</a>, <a href=\"magnet:?xt=urn:btih:", "&dn=")
+            .field("filename", "", "\" onclick=\"")
+            .field("torrenturl", "Magnet</a>", Pattern.compile("<a href=\"([^\"]*)\" title=\"[^\"]*\" class=\"dlbtn"))
+            .field("size", "title=\"Torrent Size\"><strong>", "</strong>")
+            .field("seeds", "title=\"Availability\"></span>", "</span></td>")
+            .field("creationtime", "<li>Added to index &#8212; ", " (");
+
+    // one record per row of the torrent contents table
+    private static final HtmlFieldExtractor FILE_FIELDS = new HtmlFieldExtractor()
+            .field("filetype", "<span class=\"filetype ", "\"")
+            .field("filepath", "</span> ", "</td>")
+            .skip("<td align=\"right\"><span class=\"icon")
+            .field("filesize", "\"></span>", "</td>");
 
     private static final Map<String, Integer> UNIT_TO_BYTES;
 
@@ -106,56 +118,22 @@ public class BitSnoopSearchPerformer extends TorrentRegexSearchPerformer<BitSnoo
 
     @Override
     protected int htmlPrefixOffset(String html) {
-        // we save at least 21kb of memory for every crawl.
-        if (!isScrapingFile) {
-            //when super.crawlResult is called it invokes htmlPrefixOffset
-            //but it initially needs to crawl for the parent search result
-            //if we're not yet scraping, we use our preliminaryHtmlPrefixOffset instead.
-            //This probably is a sign that TorrentRegexSearchPerformer needs a refactor
-            //to support crawling for a parent result and for a child result on pages
-            //that have both things.
-            //Things that come to mind would be to differentiate between .crawlResult
-            //and .scrapeFiles()
-            //and then have reduction offset methods for scraping, such as
-            //scrapePrefixOffset():int and scrapeSuffixOffset():int
-            return preliminaryHtmlPrefixOffset(html);
-        }
-
-        int offset = 0;
-        final String HTML_CUE_POINT = "Torrent Contents";
-        try {
-            offset = html.indexOf(HTML_CUE_POINT);
-            if (offset == -1) {
-                offset = 0;
-            } else {
-                offset += HTML_CUE_POINT.length();
-            }
-        } catch (Throwable t) {
-        }
-        return offset;
+        return preliminaryHtmlPrefixOffset(html);
     }
 
     @Override
     protected int htmlSuffixOffset(String html) {
-        if (!isScrapingFile) {
-            // preliminaryHtmlSuffixOffset is not called on crawlResult() but this
-            // is the offset we need when going for the parent result.
-            return preliminaryHtmlSuffixOffset(html);
-        }
+        return preliminaryHtmlSuffixOffset(html);
+    }
 
-        int offset = html.length() - 1;
-        try {
-            offset = html.indexOf("Additional Information");
-            if (offset == -1) {
-                //no pagination, few or no results found.
-                offset = html.indexOf("Last queries:");
-                if (offset == -1) {
-                    offset = html.length() - 1;
-                }
-            }
-        } catch (Throwable t) {
-        }
-        return offset;
+    @Override
+    protected HtmlFieldExtractor getHtmlFieldExtractor() {
+        return HTML_FIELDS;
+    }
+
+    @Override
+    protected BitSnoopSearchResult fromHtmlFields(CrawlableSearchResult sr, HtmlFieldExtractor.Fields fields) {
+        return new BitSnoopSearchResult(sr.getDetailsUrl(), fields);
     }
 
     @Override
@@ -164,31 +142,27 @@ public class BitSnoopSearchPerformer extends TorrentRegexSearchPerformer<BitSnoo
             return Collections.emptyList();
         }
 
+        // data is the detail page, with both the parent result and the files
+        return super.crawlResult(sr, data);
+    }
+
+    @Override
+    protected List<? extends SearchResult> crawlHtml(CrawlableSearchResult sr, String html) throws Exception {
         List<SearchResult> searchResults = new LinkedList<SearchResult>();
-        byte[] detailPageData = null;
-        // sr is a temp result.
-        if (!sr.isComplete()) {
-            detailPageData = fetchBytes(sr.getDetailsUrl());
-            searchResults.addAll(super.crawlResult(sr, detailPageData, false));
-
-            if (searchResults == null || searchResults.isEmpty()) {
-                return Collections.emptyList();
-            }
+        searchResults.addAll(super.crawlHtml(sr, html));
+
+        if (searchResults.isEmpty()) {
+            return searchResults;
         }
 
-        final String fullHtml = new String(detailPageData, "UTF-8");
         final BitSnoopSearchResult parent = (BitSnoopSearchResult) searchResults.get(0);
-        isScrapingFile = true;
-        final String scrapeHtml = PerformersHelper.reduceHtml(fullHtml, htmlPrefixOffset(fullHtml), htmlSuffixOffset(fullHtml));
-        final Matcher matcher = FILE_SCRAPE_PATTERN.matcher(scrapeHtml);
-        while (matcher.find()) {
+        for (HtmlFieldExtractor.Fields fields : FILE_FIELDS.extractAll(html, filesPrefixOffset(html), filesSuffixOffset(html))) {
             try {
-                String line = matcher.group();
-                if (line != null && line.contains("\"filetype dir\"")) {
+                if ("dir".equals(fields.get("filetype"))) {
                     continue;
                 }
-                final String filePath = HtmlManipulator.replaceHtmlEntities(matcher.group("filepath"));
-                final long fileSize = parseSize(matcher.group("filesize"), matcher.group("unit"));
+                final String filePath = HtmlManipulator.replaceHtmlEntities(fields.get("filepath"));
+                final long fileSize = parseSize(fields.get("filesize"));
 
                 ScrapedTorrentFileSearchResult<BitSnoopSearchResult> scrapedResult =
                         new ScrapedTorrentFileSearchResult<BitSnoopSearchResult>(parent,
@@ -204,12 +178,51 @@ public class BitSnoopSearchPerformer extends TorrentRegexSearchPerformer<BitSnoo
             }
         }
 
-        // TODO: aldenml - Add album logic here, can't reason with isScrapingFile mutable flag.
+        // TODO: aldenml - Add album logic here.
 
-        isScrapingFile = false;
         return searchResults;
     }
 
+    private int filesPrefixOffset(String html) {
+        int offset = 0;
+        final String HTML_CUE_POINT = "Torrent Contents";
+        try {
+            offset = html.indexOf(HTML_CUE_POINT);
+            if (offset == -1) {
+                offset = 0;
+            } else {
+                offset += HTML_CUE_POINT.length();
+            }
+        } catch (Throwable t) {
+        }
+        return offset;
+    }
+
+    private int filesSuffixOffset(String html) {
+        int offset = html.length() - 1;
+        try {
+            offset = html.indexOf("Additional Information");
+            if (offset == -1) {
+                //no pagination, few or no results found.
+                offset = html.indexOf("Last queries:");
+                if (offset == -1) {
+                    offset = html.length() - 1;
+                }
+            }
+        } catch (Throwable t) {
+        }
+        return offset;
+    }
+
+    /**
+     * Parses sizes like "1,024.5 MB".
+     */
+    private long parseSize(String group) {
+        group = group.trim();
+        int space = group.lastIndexOf(' ');
+        return parseSize(group.substring(0, space), group.substring(space + 1));
+    }
+
     private long parseSize(String filesize, String unit) {
         filesize = filesize.replaceAll(",", "");
         double size = Double.parseDouble(filesize);
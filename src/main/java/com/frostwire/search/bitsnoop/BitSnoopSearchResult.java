@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import org.apache.commons.io.FilenameUtils;
+import com.frostwire.search.HtmlFieldExtractor;
 import com.frostwire.search.SearchMatcher;
 import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.util.HtmlManipulator;
@@ -72,6 +73,17 @@ public class BitSnoopSearchResult extends AbstractTorrentSearchResult {
         this.displayName = HtmlManipulator.replaceHtmlEntities(FilenameUtils.getBaseName(filename));
     }
 
+    public BitSnoopSearchResult(String detailsUrl, HtmlFieldExtractor.Fields fields) {
+        this.detailsUrl = detailsUrl;
+        this.infoHash = fields.get("infohash");
+        this.filename = parseFileName(fields.get("filename"), FilenameUtils.getBaseName(detailsUrl));
+        this.torrentUrl = fields.get("torrenturl");
+        this.size = parseSize(fields.get("size"));
+        this.seeds = parseSeeds(fields.get("seeds"));
+        this.creationTime = parseCreationTime(fields.get("creationtime"));
+        this.displayName = HtmlManipulator.replaceHtmlEntities(FilenameUtils.getBaseName(filename));
+    }
+
     @Override
     public long getSize() {
         return size;
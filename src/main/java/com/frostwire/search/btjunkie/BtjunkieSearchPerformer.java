@@ -77,7 +77,7 @@ public class BtjunkieSearchPerformer extends CrawlRegexSearchPerformer<BtjunkieS
                 PerformersHelper.parseInfoHash(matcher.group("magnet")),
                 parseSize(matcher.group("size")),
                 parseDate(matcher.group("date")),
-                parseSeeds(matcher.group("seeds")));
+                matcher.groupInt("seeds", 0));
 
         return sr;
     }
@@ -112,14 +112,6 @@ public class BtjunkieSearchPerformer extends CrawlRegexSearchPerformer<BtjunkieS
         return result;
     }
 
-    private int parseSeeds(String group) {
-        try {
-            return Integer.parseInt(group);
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
     private String parseDisplayName(String rawdisplayname) {
         return rawdisplayname.replaceAll("[\\:*?\"|\\[\\]]+", " ");
     }
@@ -61,12 +61,19 @@ public class ExtratorrentSearchPerformer extends TorrentJsonSearchPerformer<Extr
 
     @Override
     protected List<ExtratorrentItem> parseJson(String json) {
-        ExtratorrentResponse response = JsonUtils.toObject(json, ExtratorrentResponse.class);
-        for (ExtratorrentItem item : response.list) {
-            item.link = item.link.replaceAll("extratorrent.com", "extratorrent.cc");
-            item.torrentLink = item.torrentLink.replaceAll("extratorrent.com", "extratorrent.cc");
-        }
-        return response.list;
+        final List<ExtratorrentItem> list = new ArrayList<ExtratorrentItem>();
+        JsonUtils.read(json, ExtratorrentItem.class, new JsonUtils.JsonVisitor<ExtratorrentItem>() {
+            @Override
+            public boolean visit(String name, ExtratorrentItem item) {
+                if (item != null) {
+                    item.link = item.link.replaceAll("extratorrent.com", "extratorrent.cc");
+                    item.torrentLink = item.torrentLink.replaceAll("extratorrent.com", "extratorrent.cc");
+                    list.add(item);
+                }
+                return !isStopped();
+            }
+        }, "list");
+        return list;
     }
 
     @Override
@@ -63,9 +63,18 @@ public class KATSearchPerformer extends TorrentJsonSearchPerformer<KATItem, KATS
 
     @Override
     protected List<KATItem> parseJson(String json) {
-        KATResponse response = JsonUtils.toObject(json, KATResponse.class);
-        fixItems(response.list);
-        return response.list;
+        final List<KATItem> list = new ArrayList<KATItem>();
+        JsonUtils.read(json, KATItem.class, new JsonUtils.JsonVisitor<KATItem>() {
+            @Override
+            public boolean visit(String name, KATItem item) {
+                if (item != null && item.verified != 0) {
+                    fixItem(item);
+                    list.add(item);
+                }
+                return !isStopped();
+            }
+        }, "list");
+        return list;
     }
 
     @Override
@@ -114,21 +123,10 @@ public class KATSearchPerformer extends TorrentJsonSearchPerformer<KATItem, KATS
         return result;
     }
 
-    private void fixItems(List<KATItem> list) {
-        if (list != null && list.size() > 0) {
-            Iterator<KATItem> iterator = list.iterator();
-            while (iterator.hasNext()) {
-                KATItem next = iterator.next();
-
-                if (next.verified == 0) {
-                    iterator.remove();
-                }
-
-                if (next.torrentLink.contains("torcache.net") &&
-                    next.torrentLink.contains(".torrent?title=")) {
-                    next.torrentLink = next.torrentLink.substring(0, next.torrentLink.indexOf("?title"));
-                }
-            }
+    private void fixItem(KATItem item) {
+        if (item.torrentLink.contains("torcache.net") &&
+            item.torrentLink.contains(".torrent?title=")) {
+            item.torrentLink = item.torrentLink.substring(0, item.torrentLink.indexOf("?title"));
         }
     }
 }
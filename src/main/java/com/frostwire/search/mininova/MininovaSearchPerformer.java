@@ -45,8 +45,7 @@ public class MininovaSearchPerformer extends TorrentJsonSearchPerformer<Mininova
         json = json.replace("\\n", " ");
         json = json.replace("\"hash\":", ", \"hash\":");
         json = json.replace("\"\"hash", "\", \"hash");
-        MininovaVuzeResponse response = JsonUtils.toObject(json, MininovaVuzeResponse.class);
-        return response.results;
+        return JsonUtils.toList(json, MininovaVuzeItem.class, "results");
     }
 
     @Override
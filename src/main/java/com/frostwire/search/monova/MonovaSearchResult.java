@@ -72,7 +72,7 @@ public class MonovaSearchResult extends AbstractTorrentSearchResult {
         this.infoHash = matcher.group("infohash");
         this.creationTime = parseCreationTime(matcher.group("creationtime"));
         this.size = parseSize(matcher.group("size"));
-        this.seeds = parseSeeds(matcher.group("seeds"));
+        this.seeds = matcher.groupInt("seeds", 0);
 
         // Monova can't handle direct download of torrents without some sort of cookie
         //the torcache url wont resolve into direct .torrent
@@ -113,14 +113,6 @@ public class MonovaSearchResult extends AbstractTorrentSearchResult {
         }
     }
 
-    private int parseSeeds(String group) {
-        try {
-            return Integer.parseInt(group);
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
     private long parseCreationTime(String addedWhenString) {
 
         String[] arr = addedWhenString.trim().split(" ");
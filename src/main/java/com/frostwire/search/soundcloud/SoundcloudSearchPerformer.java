@@ -46,16 +46,18 @@ public class SoundcloudSearchPerformer extends PagedWebSearchPerformer {
 
     @Override
     protected List<? extends SearchResult> searchPage(String page) {
-        List<SearchResult> result = new LinkedList<SearchResult>();
+        final List<SearchResult> result = new LinkedList<SearchResult>();
 
-        SoundcloudResponse response = JsonUtils.toObject(page, SoundcloudResponse.class);
-
-        for (SoundcloudItem item : response.collection) {
-            if (!isStopped() && item != null && item.downloadable) {
-                SoundcloudSearchResult sr = new SoundcloudSearchResult(item, SOUNDCLOUD_CLIENTID, SOUNDCLOUD_APP_VERSION);
-                result.add(sr);
+        JsonUtils.read(page, SoundcloudItem.class, new JsonUtils.JsonVisitor<SoundcloudItem>() {
+            @Override
+            public boolean visit(String name, SoundcloudItem item) {
+                if (item != null && item.downloadable) {
+                    SoundcloudSearchResult sr = new SoundcloudSearchResult(item, SOUNDCLOUD_CLIENTID, SOUNDCLOUD_APP_VERSION);
+                    result.add(sr);
+                }
+                return !isStopped();
             }
-        }
+        }, "collection");
 
         return result;
     }
@@ -66,7 +66,7 @@ public class TorLockSearchResult extends AbstractTorrentSearchResult {
         this.filename = parseFileName(matcher.group("filename"), FilenameUtils.getBaseName(detailsUrl));
         this.size = parseSize(matcher.group("filesize"));
         this.creationTime = parseCreationTime(matcher.group("time"));
-        this.seeds = parseSeeds(matcher.group("seeds"));
+        this.seeds = matcher.groupInt("seeds", 0);
         this.torrentUrl = "http://" + domainName + "/tor/" + matcher.group("torrentid") + ".torrent";
         this.displayName = HtmlManipulator.replaceHtmlEntities(FilenameUtils.getBaseName(filename));
     }
@@ -147,14 +147,6 @@ public class TorLockSearchResult extends AbstractTorrentSearchResult {
         }
     }
 
-    private int parseSeeds(String group) {
-        try {
-            return Integer.parseInt(group);
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
     private long parseCreationTime(String dateString) {
         long result = System.currentTimeMillis();
         try {
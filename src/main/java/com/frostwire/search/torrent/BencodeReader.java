@@ -0,0 +1,239 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.torrent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Pull parser of bencoded data, reading the values one token at a time right
+ * from the buffer, without building a tree, in the style of gson's JsonReader.
+ * <p/>
+ * The positions are absolute offsets in the buffer, so the span of any value
+ * can be taken with {@link #position()} before and after reading or skipping it.
+ * <p/>
+ * Errors in the data throw {@link IllegalArgumentException}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class BencodeReader {
+
+    public enum Token {
+        INTEGER, STRING, LIST, DICTIONARY, END
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buf;
+
+    public BencodeReader(ByteBuffer buf) {
+        this.buf = buf.duplicate();
+    }
+
+    public BencodeReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    public int position() {
+        return buf.position();
+    }
+
+    public void position(int position) {
+        buf.position(position);
+    }
+
+    /**
+     * Returns the type of the next value, or END at the end of a list or dictionary.
+     */
+    public Token peek() {
+        byte b = at(buf.position());
+        switch (b) {
+            case 'i':
+                return Token.INTEGER;
+            case 'l':
+                return Token.LIST;
+            case 'd':
+                return Token.DICTIONARY;
+            case 'e':
+                return Token.END;
+            default:
+                if (b >= '0' && b <= '9') {
+                    return Token.STRING;
+                }
+                throw error("Unexpected byte '" + (char) b + "'");
+        }
+    }
+
+    public boolean hasNext() {
+        return peek() != Token.END;
+    }
+
+    public void beginList() {
+        expect('l');
+    }
+
+    public void beginDictionary() {
+        expect('d');
+    }
+
+    /**
+     * Consumes the end of the current list or dictionary.
+     */
+    public void end() {
+        expect('e');
+    }
+
+    public long readLong() {
+        expect('i');
+        long n = parseLong('e');
+        buf.get(); // 'e'
+        return n;
+    }
+
+    public byte[] readBytes() {
+        int length = readStringLength();
+        byte[] b = new byte[length];
+        buf.get(b);
+        return b;
+    }
+
+    /**
+     * Reads a string value, decoded as UTF-8.
+     */
+    public String readString() {
+        int length = readStringLength();
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] b = new byte[length];
+            buf.get(b);
+            s = new String(b, UTF_8);
+        }
+        return s;
+    }
+
+    /**
+     * Reads a dictionary key and tells if it's equal to the given ASCII key, without
+     * creating a string.
+     */
+    public boolean readKey(String key) {
+        int length = readStringLength();
+        int start = buf.position();
+        buf.position(start + length);
+
+        if (length != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf.get(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips the next value, with everything it contains.
+     */
+    public void skip() {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case INTEGER:
+                    buf.get(); // 'i'
+                    parseLong('e');
+                    buf.get(); // 'e'
+                    break;
+                case STRING:
+                    int length = readStringLength();
+                    buf.position(buf.position() + length);
+                    break;
+                case LIST:
+                case DICTIONARY:
+                    buf.get();
+                    depth++;
+                    break;
+                case END:
+                    if (depth == 0) {
+                        throw error("Unexpected end");
+                    }
+                    buf.get();
+                    depth--;
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    private int readStringLength() {
+        long length = parseLong(':');
+        buf.get(); // ':'
+        if (length < 0 || length > buf.remaining()) {
+            throw error("Invalid string length " + length);
+        }
+        return (int) length;
+    }
+
+    // parses a decimal number up to the terminator, leaving it unread
+    private long parseLong(char terminator) {
+        int p = buf.position();
+        boolean negative = false;
+        if (at(p) == '-') {
+            negative = true;
+            p++;
+        }
+
+        long n = 0;
+        int digits = 0;
+        byte b;
+        while ((b = at(p)) != terminator) {
+            if (b < '0' || b > '9' || digits == 18) {
+                throw error("Invalid number");
+            }
+            n = n * 10 + (b - '0');
+            digits++;
+            p++;
+        }
+        if (digits == 0) {
+            throw error("Invalid number");
+        }
+
+        buf.position(p);
+        return negative ? -n : n;
+    }
+
+    private void expect(char c) {
+        if (at(buf.position()) != c) {
+            throw error("Expected '" + c + "'");
+        }
+        buf.get();
+    }
+
+    private byte at(int p) {
+        if (p >= buf.limit()) {
+            throw error("Unexpected end of data");
+        }
+        return buf.get(p);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid bencoded data at " + buf.position() + ": " + message);
+    }
+}
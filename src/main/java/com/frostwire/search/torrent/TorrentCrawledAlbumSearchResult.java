@@ -35,13 +35,17 @@ public final class TorrentCrawledAlbumSearchResult extends AbstractCrawledSearch
     private final String displayName;
     private final long size;
 
-    public TorrentCrawledAlbumSearchResult(TorrentCrawlableSearchResult sr, String artist, String album, List<TorrentItemSearchResult> items) {
+    public TorrentCrawledAlbumSearchResult(TorrentCrawlableSearchResult sr, String artist, String album, List<TorrentItemSearchResult> items, long size) {
         super(sr);
         this.artist = artist;
         this.album = album;
         this.items = items;
         this.displayName = buildDisplayName(artist, album);
-        this.size = buildSize(items);
+        this.size = size;
+    }
+
+    public TorrentCrawledAlbumSearchResult(TorrentCrawlableSearchResult sr, String artist, String album, List<TorrentItemSearchResult> items) {
+        this(sr, artist, album, items, buildSize(items));
     }
 
     public String artist() {
@@ -109,13 +113,13 @@ public final class TorrentCrawledAlbumSearchResult extends AbstractCrawledSearch
             result = "Unknown album";
         }
         if (StringUtils.isNotBlank(artist)) {
-            result = artist + " - " + album;
+            result = artist + " - " + result;
         }
 
         return result;
     }
 
-    private long buildSize(List<TorrentItemSearchResult> items) {
+    private static long buildSize(List<TorrentItemSearchResult> items) {
         long r = 0;
 
         for (TorrentItemSearchResult sr : items) {
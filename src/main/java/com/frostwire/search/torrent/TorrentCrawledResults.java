@@ -0,0 +1,181 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.torrent;
+
+import com.frostwire.search.SearchPerformer;
+import com.frostwire.util.MimeDetector;
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+
+/**
+ * The files of a crawled torrent as a list of search results created on demand.
+ * <p/>
+ * Only the index and the position in the data of the selected files are kept, the
+ * pad files and the files rejected by the filter are left out before any result is
+ * created for them, and a {@link TorrentCrawledSearchResult} is read from the
+ * {@link TorrentMetadata} every time an element is read. Torrents with many thousands of files are meant to be read in
+ * pages, with {@link #subList(int, int)}, so that only one page of results is
+ * alive at a time.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TorrentCrawledResults extends AbstractList<TorrentCrawledSearchResult> implements RandomAccess {
+
+    private final TorrentCrawlableSearchResult sr;
+    private final TorrentMetadata md;
+    private final int[] indexes;
+    private final int[] positions; // of the file entries in the data
+
+    public TorrentCrawledResults(SearchPerformer performer, TorrentCrawlableSearchResult sr, TorrentMetadata md, Filter filter) {
+        this.sr = sr;
+        this.md = md;
+
+        int numFiles = md.getNumFiles();
+        int[] indexes = new int[numFiles];
+        int[] positions = new int[numFiles];
+        int n = 0;
+
+        Iterator<TorrentMetadata.FileEntry> it = md.files();
+        while (!performer.isStopped() && it.hasNext()) {
+            TorrentMetadata.FileEntry f = it.next();
+            // TODO: Check for the hidden attribute
+            if (f.isPadFile()) {
+                continue;
+            }
+
+            if (filter == null || filter.accept(FilenameUtils.getName(f.getPath()), f.getSize())) {
+                indexes[n] = f.getIndex();
+                positions[n] = f.getPosition();
+                n++;
+            }
+        }
+
+        this.indexes = n < numFiles ? Arrays.copyOf(indexes, n) : indexes;
+        this.positions = n < numFiles ? Arrays.copyOf(positions, n) : positions;
+    }
+
+    public TorrentCrawledResults(SearchPerformer performer, TorrentCrawlableSearchResult sr, TorrentMetadata md) {
+        this(performer, sr, md, null);
+    }
+
+    @Override
+    public TorrentCrawledSearchResult get(int index) {
+        if (index < 0 || index >= indexes.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + indexes.length);
+        }
+        TorrentMetadata.FileEntry f = md.fileAt(positions[index], indexes[index]);
+        return new TorrentCrawledSearchResult(sr, md, f.getIndex(), f.getPath(), f.getSize());
+    }
+
+    @Override
+    public int size() {
+        return indexes.length;
+    }
+
+    /**
+     * Returns the index in the torrent of the file at the given position of the list.
+     */
+    public int getFileIndex(int index) {
+        return indexes[index];
+    }
+
+    /**
+     * Returns a view of the files at the given positions of the list, created on
+     * demand like the elements of this list.
+     */
+    public List<TorrentItemSearchResult> select(final int[] rows) {
+        return new Selection(rows);
+    }
+
+    public TorrentCrawlableSearchResult getParent() {
+        return sr;
+    }
+
+    public TorrentMetadata getMetadata() {
+        return md;
+    }
+
+    private final class Selection extends AbstractList<TorrentItemSearchResult> implements RandomAccess {
+
+        private final int[] rows;
+
+        Selection(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public TorrentItemSearchResult get(int index) {
+            return TorrentCrawledResults.this.get(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+
+    /**
+     * Selects the files of the torrent by name and size.
+     */
+    public interface Filter {
+
+        boolean accept(String filename, long size);
+    }
+
+    /**
+     * Returns a filter of the files with a size between min and max, both inclusive,
+     * and one of the extensions (without the dot, case insensitive), or any extension
+     * if none is given.
+     */
+    public static Filter filter(final long minSize, final long maxSize, String... extensions) {
+        final String[] exts = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++) {
+            exts[i] = extensions[i].toLowerCase(Locale.US);
+        }
+
+        return new Filter() {
+            @Override
+            public boolean accept(String filename, long size) {
+                if (size < minSize || size > maxSize) {
+                    return false;
+                }
+                if (exts.length == 0) {
+                    return true;
+                }
+                int start = MimeDetector.extensionIndex(filename);
+                if (start == -1) {
+                    return false;
+                }
+                int length = filename.length() - start;
+                for (String e : exts) {
+                    if (e.length() == length && filename.regionMatches(true, start, e, 0, length)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
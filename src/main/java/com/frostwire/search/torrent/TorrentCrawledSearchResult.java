@@ -29,6 +29,7 @@ import org.apache.commons.io.FilenameUtils;
 public final class TorrentCrawledSearchResult extends AbstractCrawledSearchResult<TorrentCrawlableSearchResult> implements TorrentItemSearchResult {
 
     private final TorrentInfo ti;
+    private final TorrentMetadata md;
     private final int fileIndex;
     private final String filePath;
     private final String displayName;
@@ -38,6 +39,22 @@ public final class TorrentCrawledSearchResult extends AbstractCrawledSearchResul
     public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, TorrentInfo ti, int fileIndex, String filePath, long fileSize) {
         super(sr);
         this.ti = ti;
+        this.md = null;
+        this.fileIndex = fileIndex;
+        this.filePath = filePath;
+        this.filename = FilenameUtils.getName(this.filePath);
+        this.size = fileSize;
+        this.displayName = FilenameUtils.getBaseName(this.filename);
+    }
+
+    /**
+     * The file comes from the metadata read in Java, the native torrent info is only
+     * created if asked for.
+     */
+    public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, TorrentMetadata md, int fileIndex, String filePath, long fileSize) {
+        super(sr);
+        this.ti = null;
+        this.md = md;
         this.fileIndex = fileIndex;
         this.filePath = filePath;
         this.filename = FilenameUtils.getName(this.filePath);
@@ -46,7 +63,14 @@ public final class TorrentCrawledSearchResult extends AbstractCrawledSearchResul
     }
 
     public TorrentInfo getTorrentInfo() {
-        return ti;
+        return ti != null ? ti : md.getTorrentInfo();
+    }
+
+    /**
+     * The metadata read in Java, or null if the result was created with a native torrent info.
+     */
+    public TorrentMetadata getMetadata() {
+        return md;
     }
 
     public int getFileIndex() {
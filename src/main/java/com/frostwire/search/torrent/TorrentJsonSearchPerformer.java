@@ -20,10 +20,12 @@ package com.frostwire.search.torrent;
 
 import com.frostwire.search.SearchResult;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
 
 /**
  * @author gubatron
@@ -34,36 +36,46 @@ public abstract class TorrentJsonSearchPerformer<T extends ComparableTorrentJson
 
     private static final int DEFAULT_NUM_CRAWLS = 10;
 
-    private final Comparator<T> itemComparator;
+    private final int numTopItems;
 
     public TorrentJsonSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int numCrawls) {
         super(domainName, token, keywords, timeout, pages, numCrawls);
-        
-        this.itemComparator = new Comparator<T>() {
-            @Override
-            public int compare(T a, T b) {
-                return b.getSeeds() - a.getSeeds();
-            }
-        };
+        this.numTopItems = numCrawls;
     }
 
     public TorrentJsonSearchPerformer(String domainName, long token, String keywords, int timeout, int pages) {
         this(domainName, token, keywords, timeout, pages, DEFAULT_NUM_CRAWLS);
     }
 
+    /**
+     * The results of the items with the most seeds come first, sorted by seeds, so
+     * that they are the ones crawled. Only those are selected, with a bounded heap,
+     * the rest of the items follow in the order of the response, and are not created
+     * at all once the search is stopped.
+     */
     @Override
     protected final List<? extends SearchResult> searchPage(String page) {
         List<SearchResult> result = new LinkedList<SearchResult>();
 
         List<T> items = parseJson(page);
 
-        if (items != null) {
-            Collections.sort(items, itemComparator);
+        if (items != null && !items.isEmpty()) {
+            if (!(items instanceof RandomAccess)) {
+                items = new ArrayList<T>(items);
+            }
+
+            int n = items.size();
+            int[] top = selectTop(items, Math.min(getNumTopItems(), n));
+            boolean[] selected = new boolean[n];
+
+            for (int i = 0; i < top.length && !isStopped(); i++) {
+                selected[top[i]] = true;
+                result.add(fromItem(items.get(top[i])));
+            }
 
-            for (T item : items) {
-                if (!isStopped()) {
-                    SearchResult sr = fromItem(item);
-                    result.add(sr);
+            for (int i = 0; i < n && !isStopped(); i++) {
+                if (!selected[i]) {
+                    result.add(fromItem(items.get(i)));
                 }
             }
         }
@@ -71,7 +83,54 @@ public abstract class TorrentJsonSearchPerformer<T extends ComparableTorrentJson
         return result;
     }
 
+    /**
+     * Number of items sorted by seeds at the top of the results, by default the
+     * number of crawls.
+     */
+    protected int getNumTopItems() {
+        return numTopItems;
+    }
+
     protected abstract List<T> parseJson(String json);
 
     protected abstract R fromItem(T item);
-}
\ No newline at end of file
+
+    /**
+     * Returns the indexes of the k items with the most seeds, in descending order of seeds,
+     * and in the order of the list for the same number of seeds, as a stable sort would.
+     */
+    private static <T extends ComparableTorrentJsonItem> int[] selectTop(final List<T> items, int k) {
+        if (k <= 0) {
+            return new int[0];
+        }
+
+        // the head is the worst of the selected items
+        PriorityQueue<Integer> heap = new PriorityQueue<Integer>(k, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int sa = items.get(a).getSeeds();
+                int sb = items.get(b).getSeeds();
+                if (sa != sb) {
+                    return sa < sb ? -1 : 1;
+                }
+                return b.compareTo(a);
+            }
+        });
+
+        int n = items.size();
+        for (int i = 0; i < n; i++) {
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (items.get(i).getSeeds() > items.get(heap.peek()).getSeeds()) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll();
+        }
+        return top;
+    }
+}
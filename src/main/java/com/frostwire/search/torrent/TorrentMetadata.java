@@ -0,0 +1,392 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.torrent;
+
+import com.frostwire.jlibtorrent.TorrentInfo;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * What the search needs from a .torrent file, its name, infohash and files, read
+ * in Java with a {@link BencodeReader}, with no native code involved.
+ * <p/>
+ * The infohash is the SHA-1 of the raw bytes of the info dictionary, as they are
+ * in the data. The files are not kept, they are read again from the data by
+ * {@link #files()}, and {@link #fileAt(int, int)} reads a single file from the
+ * position returned by {@link FileEntry#getPosition()}.
+ * <p/>
+ * The native {@link TorrentInfo} is only created, once, if {@link #getTorrentInfo()}
+ * is called, as when the user downloads one of the files.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TorrentMetadata {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ByteBuffer data;
+    private final String name;
+    private final String infoHash;
+    private final int filesPosition; // -1 for single file torrents
+    private final long singleFileLength;
+    private final int numFiles;
+    private final long totalSize;
+
+    private TorrentInfo ti;
+
+    private TorrentMetadata(ByteBuffer data, String name, String infoHash, int filesPosition, long singleFileLength) {
+        this.data = data;
+        this.name = name;
+        this.infoHash = infoHash;
+        this.filesPosition = filesPosition;
+        this.singleFileLength = singleFileLength;
+
+        if (filesPosition == -1) {
+            this.numFiles = 1;
+            this.totalSize = singleFileLength;
+        } else {
+            // only the lengths, without reading the paths
+            BencodeReader r = new BencodeReader(data);
+            r.position(filesPosition);
+            int n = 0;
+            long size = 0;
+            r.beginList();
+            while (r.hasNext()) {
+                r.beginDictionary();
+                while (r.hasNext()) {
+                    if (r.readKey("length")) {
+                        size += r.readLong();
+                    } else {
+                        r.skip();
+                    }
+                }
+                r.end();
+                n++;
+            }
+            this.numFiles = n;
+            this.totalSize = size;
+        }
+    }
+
+    public static TorrentMetadata parse(byte[] data) {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads the metadata of the .torrent in the remaining bytes of the buffer, without
+     * changing its position.
+     *
+     * @throws IllegalArgumentException if the data is not a valid .torrent
+     */
+    public static TorrentMetadata parse(ByteBuffer data) {
+        data = data.slice();
+        BencodeReader r = new BencodeReader(data);
+
+        int infoStart = -1;
+        int infoEnd = -1;
+
+        r.beginDictionary();
+        while (r.hasNext()) {
+            if (r.readKey("info")) {
+                infoStart = r.position();
+                r.skip();
+                infoEnd = r.position();
+            } else {
+                r.skip();
+            }
+        }
+
+        if (infoStart == -1) {
+            throw new IllegalArgumentException("Invalid torrent, no info dictionary");
+        }
+
+        String name = null;
+        String utf8Name = null;
+        int filesPosition = -1;
+        long length = -1;
+
+        r.position(infoStart);
+        r.beginDictionary();
+        while (r.hasNext()) {
+            int keyPosition = r.position();
+            if (r.readKey("name")) {
+                name = r.readString();
+            } else if (reset(r, keyPosition) && r.readKey("name.utf-8")) {
+                utf8Name = r.readString();
+            } else if (reset(r, keyPosition) && r.readKey("files")) {
+                filesPosition = r.position();
+                r.skip();
+            } else if (reset(r, keyPosition) && r.readKey("length")) {
+                length = r.readLong();
+            } else {
+                r.skip();
+            }
+        }
+
+        if (utf8Name != null) {
+            name = utf8Name;
+        }
+        if (name == null || (filesPosition == -1 && length < 0)) {
+            throw new IllegalArgumentException("Invalid torrent, missing name or files");
+        }
+
+        return new TorrentMetadata(data, name, sha1(data, infoStart, infoEnd), filesPosition, length);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The infohash, as 40 lower case hex digits.
+     */
+    public String getInfoHash() {
+        return infoHash;
+    }
+
+    /**
+     * Number of files, including the pad files.
+     */
+    public int getNumFiles() {
+        return numFiles;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Iterates over the files in the data, in the order of the torrent, creating
+     * each entry as it's read.
+     */
+    public Iterator<FileEntry> files() {
+        return new FileIterator();
+    }
+
+    /**
+     * Reads the file at the given position in the data, as returned by
+     * {@link FileEntry#getPosition()}.
+     */
+    public FileEntry fileAt(int position, int index) {
+        if (filesPosition == -1) {
+            return new FileEntry(index, name, singleFileLength, false, position);
+        }
+        BencodeReader r = new BencodeReader(data);
+        r.position(position);
+        return readFile(r, index);
+    }
+
+    /**
+     * Creates the native torrent info the first time, with jlibtorrent.
+     */
+    public synchronized TorrentInfo getTorrentInfo() {
+        if (ti == null) {
+            byte[] bytes = new byte[data.limit()];
+            ByteBuffer b = data.duplicate();
+            b.position(0);
+            b.get(bytes);
+            ti = TorrentInfo.bdecode(bytes);
+        }
+        return ti;
+    }
+
+    private FileEntry readFile(BencodeReader r, int index) {
+        int position = r.position();
+
+        StringBuilder path = null;
+        StringBuilder utf8Path = null;
+        long length = -1;
+        boolean pad = false;
+
+        r.beginDictionary();
+        while (r.hasNext()) {
+            int keyPosition = r.position();
+            if (r.readKey("path")) {
+                path = readPath(r);
+            } else if (reset(r, keyPosition) && r.readKey("path.utf-8")) {
+                utf8Path = readPath(r);
+            } else if (reset(r, keyPosition) && r.readKey("length")) {
+                length = r.readLong();
+            } else if (reset(r, keyPosition) && r.readKey("attr")) {
+                pad = r.readString().indexOf('p') != -1;
+            } else {
+                r.skip();
+            }
+        }
+        r.end();
+
+        if (utf8Path != null) {
+            path = utf8Path;
+        }
+        if (path == null || length < 0) {
+            throw new IllegalArgumentException("Invalid torrent, bad file entry " + index);
+        }
+
+        // old style pad files (from BitComet) only have the path to tell
+        if (!pad) {
+            pad = isPadPath(path);
+        }
+
+        return new FileEntry(index, path.insert(0, '/').insert(0, name).toString(), length, pad, position);
+    }
+
+    private static boolean isPadPath(StringBuilder path) {
+        int nameStart = path.lastIndexOf("/") + 1;
+        return path.indexOf("_____padding_file_", nameStart) == nameStart ||
+                path.indexOf(".____padding_file/") == 0 ||
+                path.indexOf("/.____padding_file/") != -1;
+    }
+
+    private static StringBuilder readPath(BencodeReader r) {
+        StringBuilder sb = new StringBuilder();
+        r.beginList();
+        while (r.hasNext()) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(r.readString());
+        }
+        r.end();
+        return sb;
+    }
+
+    // goes back to the key, to try it against another name, always true
+    private static boolean reset(BencodeReader r, int keyPosition) {
+        r.position(keyPosition);
+        return true;
+    }
+
+    private static String sha1(ByteBuffer data, int start, int end) {
+        try {
+            ByteBuffer info = data.duplicate();
+            info.position(start);
+            info.limit(end);
+
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(info);
+            byte[] digest = md.digest();
+
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class FileEntry {
+
+        private final int index;
+        private final String path;
+        private final long size;
+        private final boolean pad;
+        private final int position;
+
+        FileEntry(int index, String path, long size, boolean pad, int position) {
+            this.index = index;
+            this.path = path;
+            this.size = size;
+            this.pad = pad;
+            this.position = position;
+        }
+
+        /**
+         * The index of the file in the torrent, the same as in libtorrent.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * The path of the file, starting with the name of the torrent for multi-file
+         * torrents, with '/' as the separator.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isPadFile() {
+            return pad;
+        }
+
+        /**
+         * Position of the file entry in the data.
+         */
+        public int getPosition() {
+            return position;
+        }
+    }
+
+    private final class FileIterator implements Iterator<FileEntry> {
+
+        private final BencodeReader r;
+        private int index;
+        private boolean done;
+
+        public FileIterator() {
+            this.r = new BencodeReader(data);
+            if (filesPosition != -1) {
+                r.position(filesPosition);
+                r.beginList();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (done) {
+                return false;
+            }
+            if (filesPosition == -1) {
+                return index == 0;
+            }
+            if (!r.hasNext()) {
+                done = true;
+            }
+            return !done;
+        }
+
+        @Override
+        public FileEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (filesPosition == -1) {
+                done = true;
+                return new FileEntry(index++, name, singleFileLength, false, 0);
+            }
+            return readFile(r, index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
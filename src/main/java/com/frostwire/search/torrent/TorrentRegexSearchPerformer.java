@@ -21,6 +21,7 @@ import com.frostwire.logging.Logger;
 import com.frostwire.search.*;
 import com.frostwire.regex.Matcher;
 import com.frostwire.regex.Pattern;
+import com.frostwire.regex.PatternCache;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -39,8 +40,8 @@ public abstract class TorrentRegexSearchPerformer<T extends CrawlableSearchResul
 
     public TorrentRegexSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int numCrawls, int regexMaxResults, String preliminarSearchResultsRegex, String htmlDetailPagePatternRegex) {
         super(domainName, token, keywords, timeout, pages, numCrawls, regexMaxResults);
-        this.preliminarySearchResultsPattern = Pattern.compile(preliminarSearchResultsRegex);
-        this.htmlDetailPagePattern = Pattern.compile(htmlDetailPagePatternRegex);
+        this.preliminarySearchResultsPattern = PatternCache.get(preliminarSearchResultsRegex);
+        this.htmlDetailPagePattern = PatternCache.get(htmlDetailPagePatternRegex);
     }
 
     @Override
@@ -63,7 +64,7 @@ public abstract class TorrentRegexSearchPerformer<T extends CrawlableSearchResul
 
     @Override
     protected List<? extends SearchResult> crawlResult(CrawlableSearchResult sr, byte[] data) throws Exception {
-        return crawlResult(sr, data, false);
+        return crawlResult(sr, data, true);
     }
 
     protected List<? extends SearchResult> crawlResult(CrawlableSearchResult sr, byte[] data, boolean detectAlbums) throws Exception {
@@ -75,31 +76,62 @@ public abstract class TorrentRegexSearchPerformer<T extends CrawlableSearchResul
 
         if (sr instanceof TorrentCrawlableSearchResult) {
             //in case we fetched a torrent's info (magnet, or the .torrent itself) to obtain 
-            list.addAll(PerformersHelper.crawlTorrent(this, (TorrentCrawlableSearchResult) sr, data, detectAlbums));
+            // lazy list of the files, not copied
+            return PerformersHelper.crawlTorrent(this, (TorrentCrawlableSearchResult) sr, data, detectAlbums);
         } else {
-            String unreducedHtml = new String(data, "UTF-8");
-            String html = PerformersHelper.reduceHtml(unreducedHtml, htmlPrefixOffset(unreducedHtml), htmlSuffixOffset(unreducedHtml));
+            list.addAll(crawlHtml(sr, new String(data, "UTF-8")));
+        }
 
-            if (html != null) {
-                Matcher matcher = htmlDetailPagePattern.matcher(html);
-    
-                try {
-                    if (matcher.find()) {
-                        T searchResult = fromHtmlMatcher(sr, SearchMatcher.from(matcher));
-                        if (searchResult != null) {
-                            list.add(searchResult);
-                        }
-                    } else {
-                        LOG.error("Update Necessary:  Search broken for " + sr.getClass().getPackage().getName() + " (please notify dev-team on twitter @frostwire or write to contact@frostwire.com if you keep seeing this message.)");
+        return list;
+    }
+
+    /**
+     * Returns the results of a detail page. If there is a field extractor, it's tried
+     * first, and the html detail page pattern is only used if that fails.
+     */
+    protected List<? extends SearchResult> crawlHtml(CrawlableSearchResult sr, String unreducedHtml) throws Exception {
+        List<SearchResult> list = new LinkedList<SearchResult>();
+
+        int prefixOffset = htmlPrefixOffset(unreducedHtml);
+        int suffixOffset = htmlSuffixOffset(unreducedHtml);
+
+        HtmlFieldExtractor fieldExtractor = getHtmlFieldExtractor();
+        if (fieldExtractor != null && prefixOffset != -1 && suffixOffset != -1) {
+            try {
+                HtmlFieldExtractor.Fields fields = fieldExtractor.extract(unreducedHtml, prefixOffset, suffixOffset);
+                if (fields != null) {
+                    T searchResult = fromHtmlFields(sr, fields);
+                    if (searchResult != null) {
+                        list.add(searchResult);
+                        return list;
                     }
-                } catch (Exception e) {
-                    throw new Exception("URL:" + sr.getDetailsUrl() + " ("+ e.getMessage()+")", e);
                 }
-            } else {
-                LOG.error("Update Necessary: HTML could not be reduced for optimal search. Search broken for " + sr.getClass().getPackage().getName() + " (please notify dev-team on twitter @frostwire or write to contact@frostwire.com if you keep seeing this message.)");
+            } catch (Exception e) {
+                LOG.warn("Error extracting html fields, URL:" + sr.getDetailsUrl() + " (" + e.getMessage() + ")");
             }
         }
 
+        String html = PerformersHelper.reduceHtml(unreducedHtml, prefixOffset, suffixOffset);
+
+        if (html != null) {
+            Matcher matcher = htmlDetailPagePattern.matcher(html);
+
+            try {
+                if (matcher.find()) {
+                    T searchResult = fromHtmlMatcher(sr, SearchMatcher.from(matcher));
+                    if (searchResult != null) {
+                        list.add(searchResult);
+                    }
+                } else {
+                    LOG.error("Update Necessary:  Search broken for " + sr.getClass().getPackage().getName() + " (please notify dev-team on twitter @frostwire or write to contact@frostwire.com if you keep seeing this message.)");
+                }
+            } catch (Exception e) {
+                throw new Exception("URL:" + sr.getDetailsUrl() + " ("+ e.getMessage()+")", e);
+            }
+        } else {
+            LOG.error("Update Necessary: HTML could not be reduced for optimal search. Search broken for " + sr.getClass().getPackage().getName() + " (please notify dev-team on twitter @frostwire or write to contact@frostwire.com if you keep seeing this message.)");
+        }
+
         return list;
     }
 
@@ -123,5 +155,17 @@ public abstract class TorrentRegexSearchPerformer<T extends CrawlableSearchResul
         return html.length();
     }
 
+    /**
+     * Override to extract the detail page fields in a single pass, instead of with the
+     * html detail page pattern. See {@link #fromHtmlFields(CrawlableSearchResult, HtmlFieldExtractor.Fields)}.
+     */
+    protected HtmlFieldExtractor getHtmlFieldExtractor() {
+        return null;
+    }
+
+    protected T fromHtmlFields(CrawlableSearchResult sr, HtmlFieldExtractor.Fields fields) {
+        return null;
+    }
+
     protected abstract T fromHtmlMatcher(CrawlableSearchResult sr, SearchMatcher matcher);
 }
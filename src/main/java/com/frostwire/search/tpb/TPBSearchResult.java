@@ -92,7 +92,7 @@ public class TPBSearchResult extends AbstractTorrentSearchResult {
         this.infoHash = torrentUrl.substring(20, 60);
         this.creationTime = parseCreationTime(matcher.group(5));
         this.size = parseSize(matcher.group(6));
-        this.seeds = parseSeeds(matcher.group(7));
+        this.seeds = matcher.groupInt(7, 0);
     }
 
     @Override
@@ -159,14 +159,6 @@ public class TPBSearchResult extends AbstractTorrentSearchResult {
         }
     }
 
-    private int parseSeeds(String group) {
-        try {
-            return Integer.parseInt(group);
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
     private long parseCreationTime(String group) {
 
         //Today or for whatever minutes ago
@@ -23,6 +23,7 @@ import com.frostwire.search.SearchMatcher;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.youtube.YouTubeExtractor.LinkInfo;
 import com.frostwire.util.HtmlManipulator;
+import com.frostwire.util.http.HttpClient;
 import com.frostwire.regex.Pattern;
 
 import java.io.IOException;
@@ -43,6 +44,10 @@ public class YouTubeSearchPerformer extends CrawlRegexSearchPerformer<YouTubeSea
 
     private static final int MAX_RESULTS = 15;
 
+    private static final String HTML_PREFIX_CUE = "<div class=\"yt-uix-hovercard-content\">";
+    private static final String HTML_SUFFIX_CUE = "<div id=\"footer-container\"";
+    private static final String COOKIE = "PREF=hl=en&f4=4000000&f5=30&f1=50000000;";
+
     public YouTubeSearchPerformer(String domainName, long token, String keywords, int timeout) {
         super(domainName, token, keywords, timeout, 1, MAX_RESULTS, MAX_RESULTS);
     }
@@ -114,12 +119,27 @@ public class YouTubeSearchPerformer extends CrawlRegexSearchPerformer<YouTubeSea
 
     @Override
     protected int preliminaryHtmlPrefixOffset(String page) {
-        return page.indexOf("<div class=\"yt-uix-hovercard-content\">");
+        return page.indexOf(HTML_PREFIX_CUE);
     }
 
     @Override
     protected int preliminaryHtmlSuffixOffset(String page) {
-        return page.indexOf("<div id=\"footer-container\"");
+        return page.indexOf(HTML_SUFFIX_CUE);
+    }
+
+    @Override
+    protected boolean isStreamingSearch() {
+        return true;
+    }
+
+    @Override
+    protected String getHtmlPrefixCue() {
+        return HTML_PREFIX_CUE;
+    }
+
+    @Override
+    protected String getHtmlSuffixCue() {
+        return HTML_SUFFIX_CUE;
     }
 
     @Override
@@ -134,6 +154,11 @@ public class YouTubeSearchPerformer extends CrawlRegexSearchPerformer<YouTubeSea
 
     @Override
     protected String fetchSearchPage(String url) throws IOException {
-        return fetch(url, "PREF=hl=en&f4=4000000&f5=30&f1=50000000;", null);
+        return fetch(url, COOKIE, null);
+    }
+
+    @Override
+    protected void streamSearchPage(String url, HttpClient.HttpClientListener listener) throws IOException {
+        stream(url, COOKIE, null, listener);
     }
 }
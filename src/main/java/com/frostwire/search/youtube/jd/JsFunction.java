@@ -35,7 +35,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.frostwire.regex.Matcher;
-import com.frostwire.regex.Pattern;
+import com.frostwire.regex.PatternCache;
 
 /**
  * @author gubatron
@@ -75,7 +75,7 @@ public final class JsFunction<T> {
             stmt = stmt.substring("var ".length());
         }
 
-        final Matcher ass_m = Pattern.compile("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$").matcher(stmt);
+        final Matcher ass_m = PatternCache.get("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$").matcher(stmt);
         Lambda1 assign;
         String expr;
         if (ass_m.find()) {
@@ -149,7 +149,7 @@ public final class JsFunction<T> {
             return jsl;
         }
 
-        Matcher m = Pattern.compile("^(?<var>[$a-zA-Z0-9_]+)\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
+        Matcher m = PatternCache.get("^(?<var>[$a-zA-Z0-9_]+)\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
         if (m.find()) {
             String variable = m.group("var");
             String member = m.group("member");
@@ -218,21 +218,21 @@ public final class JsFunction<T> {
             return ((JsObject) obj).functions.get(member).eval(argvals.toArray());
         }
 
-        m = Pattern.compile("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$").matcher(expr);
+        m = PatternCache.get("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$").matcher(expr);
         if (m.find()) {
             Object val = local_vars.get(m.group("in"));
             Object idx = interpret_expression(ctx, m.group("idx"), local_vars, allow_recursion - 1);
             return ((List<?>) val).get((Integer) idx);
         }
 
-        m = Pattern.compile("^(?<a>.+?)(?<op>[%])(?<b>.+?)$").matcher(expr);
+        m = PatternCache.get("^(?<a>.+?)(?<op>[%])(?<b>.+?)$").matcher(expr);
         if (m.find()) {
             Object a = interpret_expression(ctx, m.group("a"), local_vars, allow_recursion);
             Object b = interpret_expression(ctx, m.group("b"), local_vars, allow_recursion);
             return (Integer) a % (Integer) b;
         }
 
-        m = Pattern.compile("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]+)\\)$").matcher(expr);
+        m = PatternCache.get("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]+)\\)$").matcher(expr);
         if (m.find()) {
             String fname = m.group("func");
             if (!ctx.functions.containsKey(fname) && ctx.jscode.length() > 0) {
@@ -254,11 +254,11 @@ public final class JsFunction<T> {
     private static JsObject extract_object(final JsContext ctx, String objname) {
         JsObject obj = new JsObject();
         String obj_mRegex = String.format("(var[ \\t\\n\\x0B\\f\\r]+)?%1$s[ \\t\\n\\x0B\\f\\r]*=[ \\t\\n\\x0B\\f\\r]*\\{", escape(objname)) + "[ \\t\\n\\x0B\\f\\r]*(?<fields>([a-zA-Z$0-9]+[ \\t\\n\\x0B\\f\\r]*:[ \\t\\n\\x0B\\f\\r]*function\\(.*?\\)[ \\t\\n\\x0B\\f\\r]*\\{.*?\\})*)\\}[ \\t\\n\\x0B\\f\\r]*;";
-        final Matcher obj_m = Pattern.compile(obj_mRegex).matcher(ctx.jscode);
+        final Matcher obj_m = PatternCache.get(obj_mRegex).matcher(ctx.jscode);
         obj_m.find();
         String fields = obj_m.group("fields");
         // Currently, it only supports function definitions
-        final Matcher fields_m = Pattern.compile("(?<key>[a-zA-Z$0-9]+)[ \\t\\n\\x0B\\f\\r]*:[ \\t\\n\\x0B\\f\\r]*function\\((?<args>[a-z,]+)\\)\\{(?<code>[^\\}]+)\\}").matcher(fields);
+        final Matcher fields_m = PatternCache.get("(?<key>[a-zA-Z$0-9]+)[ \\t\\n\\x0B\\f\\r]*:[ \\t\\n\\x0B\\f\\r]*function\\((?<args>[a-z,]+)\\)\\{(?<code>[^\\}]+)\\}").matcher(fields);
 
         while (fields_m.find()) {
             final String[] argnames = mscpy(fields_m.group("args").split(","));
@@ -273,7 +273,7 @@ public final class JsFunction<T> {
 
     private static LambdaN extract_function(final JsContext ctx, String funcname) {
         String func_mRegex = String.format("(function %1$s|[\\{;]%1$s[ \\t\\n\\x0B\\f\\r]*=[ \\t\\n\\x0B\\f\\r]*function)", escape(funcname)) + "\\((?<args>[a-z,]+)\\)\\{(?<code>[^\\}]+)\\}";
-        final Matcher func_m = Pattern.compile(func_mRegex).matcher(ctx.jscode);
+        final Matcher func_m = PatternCache.get(func_mRegex).matcher(ctx.jscode);
         if (!func_m.find()) {
             throw new JsError("Could not find JS function " + funcname);
         }
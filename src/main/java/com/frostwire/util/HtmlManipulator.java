@@ -86,16 +86,29 @@ public final class HtmlManipulator
     /** value given by RAW_HTML_ENTITY_TABLE.hashCode(), used to guard against accidental modification */
     private static final int RAW_HTML_ENTITY_TABLE_HASHCODE = -301953893;
 
-    /** mapping: HTML entity ---> Unicode character */
-    private static final Map<String,Character> HTML_ENTITY_TO_UNICODE_MAP = new HashMap<String,Character>();
-
     /** mapping: Unicode character ---> HTML entity */
     private static final Map<Character,String> UNICODE_TO_HTML_ENTITY_MAP = new HashMap<Character,String>();
 
+    /**
+    * Trie of the named HTML entities, stored in parallel arrays indexed by node.
+    * - The children of a node are a linked list: TRIE_CHILD is the first child and
+    *   TRIE_SIBLING the next one, each labeled with its TRIE_CHAR.
+    * - TRIE_VALUE is the Unicode character of the entity ending at the node, or 0 if none.
+    * - Node 0 is the root, whose children are also indexed by ASCII char in TRIE_ROOT.
+    */
+    private static final int[] TRIE_ROOT = new int[128];
+    private static final int[] TRIE_CHILD;
+    private static final int[] TRIE_SIBLING;
+    private static final char[] TRIE_CHAR;
+    private static final char[] TRIE_VALUE;
+
+    /** largest Unicode code point accepted in a numeric entity */
+    private static final int MAX_CODE_POINT = 0x10FFFF;
+
 
     /**
     * Static initialization block.
-    * Populates HTML_ENTITY_TO_UNICODE_MAP and UNICODE_TO_HTML_ENTITY_MAP.
+    * Populates the named entities trie and UNICODE_TO_HTML_ENTITY_MAP.
     */
     static
     {
@@ -105,15 +118,51 @@ public final class HtmlManipulator
             //throw new RuntimeException("(INTERNAL) Malformed HtmlManipulator.RAW_HTML_ENTITY_TABLE.");
         }
 
-        /* populate HTML entity <---> Unicode character maps */
+        /* populate HTML entity <---> Unicode character mappings */
         final String[] elements = RAW_HTML_ENTITY_TABLE.split("[\\s]++");
 
+        /* one node per char of the names at most, plus the root */
+        int capacity = 1;
+        for (int i = 0; i < elements.length; i += 3)
+        {
+            capacity += elements[i].length();
+        }
+
+        TRIE_CHILD = new int[capacity];
+        TRIE_SIBLING = new int[capacity];
+        TRIE_CHAR = new char[capacity];
+        TRIE_VALUE = new char[capacity];
+        int size = 1;
+
         for (int i = 0; i < elements.length; i += 3)
         {
+            final String name = elements[i];
             final char unicode = (char) Integer.parseInt(elements[i + 2], 16);
-            HTML_ENTITY_TO_UNICODE_MAP.put(elements[i], unicode);
-            HTML_ENTITY_TO_UNICODE_MAP.put(elements[i + 1], unicode);
-            UNICODE_TO_HTML_ENTITY_MAP.put(unicode, elements[i]);
+
+            int node = 0;
+            for (int k = 0; k < name.length(); k++)
+            {
+                final char c = name.charAt(k);
+                int child = child(node, c);
+
+                if (child == 0)
+                {
+                    child = size++;
+                    TRIE_CHAR[child] = c;
+                    TRIE_SIBLING[child] = TRIE_CHILD[node];
+                    TRIE_CHILD[node] = child;
+
+                    if (node == 0)
+                    {
+                        TRIE_ROOT[c] = child;
+                    }
+                }
+
+                node = child;
+            }
+
+            TRIE_VALUE[node] = unicode;
+            UNICODE_TO_HTML_ENTITY_MAP.put(unicode, name);
         }
     }
 
@@ -127,45 +176,182 @@ public final class HtmlManipulator
 
     /**
     * Replace HTML entities in a given string with their Unicode character representations.
+    * Named entities (e.g. "&amp;amp;") and decimal or hexadecimal numeric entities
+    * (e.g. "&amp;#8212;", "&amp;#x2014;") are replaced, anything else is left as is.
     *
     * @param s
     *     input string
     * @return
-    *     string with HTML entities replaced
+    *     string with HTML entities replaced, the same input string if there are none
     */
     public static String replaceHtmlEntities(
                 final String s)
     {
-        final StringBuilder t = new StringBuilder();
+        final int n = s.length();
+        int i = s.indexOf('&');
 
-        for (int i = 0, n = s.length(); i < n; i++)
+        /* find the first actual entity, before allocating anything */
+        long entity = -1;
+        while (i >= 0 && (entity = decodeEntity(s, i, n)) == -1)
         {
-            final char c = s.charAt(i);
+            i = s.indexOf('&', i + 1);
+        }
+
+        if (entity == -1)
+        {
+            return s;
+        }
+
+        final StringBuilder t = new StringBuilder(n);
+        t.append(s, 0, i);
+        t.appendCodePoint((int) (entity >>> 32));
+        replaceHtmlEntities(s, (int) entity, n, t);
+
+        return t.toString();
+    }
+
 
-            if (c == '&')
+    /**
+    * Replace HTML entities in a given range of a char sequence with their Unicode character
+    * representations, appending the result to a given buffer, which can be reused between
+    * calls to avoid any allocation.
+    *
+    * @param s
+    *     input char sequence
+    * @param start
+    *     index of the first char to decode
+    * @param end
+    *     index after the last char to decode
+    * @param out
+    *     buffer the decoded chars are appended to
+    * @return
+    *     the given buffer
+    */
+    public static StringBuilder replaceHtmlEntities(
+                final CharSequence s,
+                final int start,
+                final int end,
+                final StringBuilder out)
+    {
+        /* start of the chars not yet appended */
+        int mark = start;
+
+        for (int i = start; i < end; i++)
+        {
+            if (s.charAt(i) == '&')
             {
-                /* candidate HTML entity */
-                final int j = s.indexOf(';', i);
+                final long entity = decodeEntity(s, i, end);
 
-                if (j >= 0)
+                if (entity != -1)
                 {
-                    final Character unicode = HTML_ENTITY_TO_UNICODE_MAP.get(s.substring(i + 1, j));
+                    out.append(s, mark, i);
+                    out.appendCodePoint((int) (entity >>> 32));
+                    mark = (int) entity;
+                    i = mark - 1; /* advance index */
+                }
+            }
+        }
 
-                    if (unicode != null)
-                    {
-                        /* insert Unicode representation */
-                        t.append((char) unicode);
-                        i = j; /* advance index */
-                        continue;
-                    }
+        out.append(s, mark, end);
+
+        return out;
+    }
+
+
+    /**
+    * Decode the HTML entity starting with the '&' at a given index, reading no further
+    * than the first char that can't be part of it.
+    *
+    * @return
+    *     the code point in the upper 32 bits and the index after the ';' in the lower
+    *     32 bits, or -1 if there is no known entity at the index
+    */
+    private static long decodeEntity(
+                final CharSequence s,
+                final int start,
+                final int end)
+    {
+        int i = start + 1;
+
+        if (i < end && s.charAt(i) == '#')
+        {
+            /* numeric entity, decimal or hexadecimal */
+            i++;
+            final boolean hex = i < end && (s.charAt(i) == 'x' || s.charAt(i) == 'X');
+            if (hex)
+            {
+                i++;
+            }
+
+            final int digits = i;
+            int codePoint = 0;
+
+            for (; i < end; i++)
+            {
+                final int d = Character.digit(s.charAt(i), hex ? 16 : 10);
+                if (d == -1)
+                {
+                    break;
+                }
+
+                codePoint = codePoint * (hex ? 16 : 10) + d;
+                if (codePoint > MAX_CODE_POINT)
+                {
+                    return -1;
                 }
             }
 
-            /* treat as a literal character */
-            t.append(c);
+            if (i == digits || i == end || s.charAt(i) != ';' ||
+                codePoint == 0 || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+            {
+                return -1;
+            }
+
+            return ((long) codePoint << 32) | (i + 1);
         }
 
-        return t.toString();
+        /* named entity, walk down the trie */
+        int node = 0;
+        for (; i < end; i++)
+        {
+            final char c = s.charAt(i);
+            if (c == ';')
+            {
+                break;
+            }
+
+            node = node == 0 ? (c < 128 ? TRIE_ROOT[c] : 0) : child(node, c);
+            if (node == 0)
+            {
+                return -1;
+            }
+        }
+
+        if (i == end || node == 0 || TRIE_VALUE[node] == 0)
+        {
+            return -1;
+        }
+
+        return ((long) TRIE_VALUE[node] << 32) | (i + 1);
+    }
+
+
+    /**
+    * Return the child of a trie node labeled with a given char, or 0 if there is none.
+    */
+    private static int child(
+                final int node,
+                final char c)
+    {
+        for (int child = TRIE_CHILD[node]; child != 0; child = TRIE_SIBLING[child])
+        {
+            if (TRIE_CHAR[child] == c)
+            {
+                return child;
+            }
+        }
+
+        return 0;
     }
 
 
@@ -20,6 +20,16 @@ package com.frostwire.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Simple JSON utility class based on google-gson.
@@ -76,4 +86,123 @@ public final class JsonUtils {
     public static <T> T toObject(String json, Class<T> classOfT) {
         return gson.fromJson(json, classOfT);
     }
+
+    /**
+     * Reads the elements of the array, or the members of the object, found at the given
+     * path of object member names, binding each one to the specified class as it's read
+     * and passing it to the visitor. No tree of the whole document is built, the members
+     * not declared in the class are skipped, and the reading stops as soon as the visitor
+     * returns false, leaving the rest of the document unparsed.
+     * <p/>
+     * Nothing is visited if the path is not found or the value at the path is null.
+     * <p/>
+     * Usage: {@code JsonUtils.read(json, ArchiveorgItem.class, visitor, "response", "docs")}
+     *
+     * @param <T>      the type of the elements
+     * @param json     the string from which the elements are to be deserialized
+     * @param classOfT the class of T
+     * @param visitor  the visitor of the elements
+     * @param path     the names of the members leading to the array or object
+     */
+    public static <T> void read(String json, Class<T> classOfT, JsonVisitor<T> visitor, String... path) {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+
+        try {
+            if (!moveTo(reader, path)) {
+                return;
+            }
+
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    T value = gson.fromJson(reader, classOfT);
+                    if (!visitor.visit(null, value)) {
+                        return;
+                    }
+                }
+            } else if (token == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    T value = gson.fromJson(reader, classOfT);
+                    if (!visitor.visit(name, value)) {
+                        return;
+                    }
+                }
+            } else if (token != JsonToken.NULL) {
+                throw new JsonSyntaxException("Expected an array or an object but was " + token);
+            }
+        } catch (MalformedJsonException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads up to max elements of the array (or members of the object) found at the given
+     * path, see {@link #read(String, Class, JsonVisitor, String...)}.
+     *
+     * @param <T>      the type of the elements
+     * @param json     the string from which the elements are to be deserialized
+     * @param classOfT the class of T
+     * @param max      the max number of elements to read
+     * @param path     the names of the members leading to the array or object
+     * @return the list of elements, empty if the path is not found
+     */
+    public static <T> List<T> toList(String json, Class<T> classOfT, final int max, String... path) {
+        final List<T> list = new ArrayList<T>();
+        if (max > 0) {
+            read(json, classOfT, new JsonVisitor<T>() {
+                @Override
+                public boolean visit(String name, T value) {
+                    list.add(value);
+                    return list.size() < max;
+                }
+            }, path);
+        }
+        return list;
+    }
+
+    public static <T> List<T> toList(String json, Class<T> classOfT, String... path) {
+        return toList(json, classOfT, Integer.MAX_VALUE, path);
+    }
+
+    private static boolean moveTo(JsonReader reader, String[] path) throws IOException {
+        for (String name : path) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            boolean found = false;
+            while (!found && reader.hasNext()) {
+                if (name.equals(reader.nextName())) {
+                    found = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Receives the values read by {@link #read(String, Class, JsonVisitor, String...)}.
+     */
+    public interface JsonVisitor<T> {
+
+        /**
+         * @param name  the member name, or null for the elements of an array
+         * @param value the bound value, null for json nulls
+         * @return true to keep reading, false to stop
+         */
+        boolean visit(String name, T value);
+    }
 }
@@ -18,10 +18,20 @@
 
 package com.frostwire.util;
 
+import org.apache.commons.io.filefilter.MagicNumberFileFilter;
+
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * MIME types and media categories of files, by extension and, for local files,
+ * by content.
+ * <p/>
+ * The extensions are in an immutable open addressing table, built once when the
+ * class is loaded, so it's safe to use from any thread. The lookups by path read
+ * the extension in place, case insensitive, without creating any string.
+ *
  * @author gubatron
  * @author aldenml
  */
@@ -29,19 +39,251 @@ public final class MimeDetector {
 
     public static final String UNKNOWN = "application/octet-stream";
 
-    private static Map<String, String> map = null;
+    public enum Category {
+        AUDIO, VIDEO, IMAGE, TEXT, APPLICATION, OTHER
+    }
+
+    private static final String[] STREAMABLE_EXTENSIONS = {"mp3", "ogg", "wma", "wmv", "m4a", "aac", "flac", "mp4", "flv", "mov", "mpg", "mpeg", "3gp", "m4v", "webm"};
+
+    private static final Table TABLE = new Table(buildMimeTypeMap(), STREAMABLE_EXTENSIONS);
+
+    /**
+     * Magic numbers of the common media formats, tried in order after the one expected
+     * from the extension. The same magic number can be listed for several types, so
+     * that the one of the extension wins when it matches.
+     */
+    private static final MagicNumberFileFilter[] MAGIC_FILTERS = {
+            new MagicNumberFileFilter("ID3"),
+            new MagicNumberFileFilter(new byte[]{(byte) 0xFF, (byte) 0xFB}),
+            new MagicNumberFileFilter(new byte[]{(byte) 0xFF, (byte) 0xF3}),
+            new MagicNumberFileFilter(new byte[]{(byte) 0xFF, (byte) 0xF2}),
+            new MagicNumberFileFilter("fLaC"),
+            new MagicNumberFileFilter("OggS"),
+            new MagicNumberFileFilter("WAVE", 8),
+            new MagicNumberFileFilter("ftypM4A", 4),
+            new MagicNumberFileFilter("ftyp", 4),
+            new MagicNumberFileFilter(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}),
+            new MagicNumberFileFilter(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}),
+            new MagicNumberFileFilter(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3}),
+            new MagicNumberFileFilter("AVI ", 8),
+            new MagicNumberFileFilter("FLV"),
+            new MagicNumberFileFilter(new byte[]{0x30, 0x26, (byte) 0xB2, 0x75}),
+            new MagicNumberFileFilter(new byte[]{(byte) 0x89, 'P', 'N', 'G'}),
+            new MagicNumberFileFilter(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+            new MagicNumberFileFilter("GIF8"),
+            new MagicNumberFileFilter("%PDF"),
+            new MagicNumberFileFilter(new byte[]{'P', 'K', 3, 4}),
+            new MagicNumberFileFilter("Rar!"),
+            new MagicNumberFileFilter("d8:announce")
+    };
+
+    private static final String[] MAGIC_MIME_TYPES = {
+            "audio/mpeg",
+            "audio/mpeg",
+            "audio/mpeg",
+            "audio/mpeg",
+            "audio/flac",
+            "audio/ogg",
+            "audio/wav",
+            "audio/mp4",
+            "video/mp4",
+            "video/x-matroska",
+            "video/webm",
+            "audio/x-matroska",
+            "video/avi",
+            "video/x-flv",
+            "video/x-ms-asf",
+            "image/png",
+            "image/jpeg",
+            "image/gif",
+            "application/pdf",
+            "application/zip",
+            "application/x-rar-compressed",
+            "application/x-bittorrent"
+    };
 
     private MimeDetector() {
     }
 
+    /**
+     * Returns the MIME type of the extension (without the dot), or {@link #UNKNOWN}.
+     */
     public static String getMimeType(String ext) {
-        ensureMap();
-        return map.containsKey(ext) ? map.get(ext) : UNKNOWN;
+        if (ext == null) {
+            return UNKNOWN;
+        }
+        int i = TABLE.find(ext, 0, ext.length());
+        return i != -1 ? TABLE.mimeTypes[i] : UNKNOWN;
     }
 
-    private static void ensureMap() {
-        if (map == null) {
-            map = buildMimeTypeMap();
+    public static Category getCategory(String ext) {
+        if (ext == null) {
+            return Category.OTHER;
+        }
+        int i = TABLE.find(ext, 0, ext.length());
+        return i != -1 ? TABLE.categories[i] : Category.OTHER;
+    }
+
+    public static String getMimeTypeFromPath(String path) {
+        int i = findPath(path);
+        return i != -1 ? TABLE.mimeTypes[i] : UNKNOWN;
+    }
+
+    public static Category getCategoryFromPath(String path) {
+        int i = findPath(path);
+        return i != -1 ? TABLE.categories[i] : Category.OTHER;
+    }
+
+    /**
+     * Tells if the file can be played while it's downloaded, by its extension.
+     */
+    public static boolean isStreamable(String path) {
+        int i = findPath(path);
+        return i != -1 && TABLE.streamable[i];
+    }
+
+    /**
+     * Returns the index of the first char of the extension of the file name in the path,
+     * the same as {@link org.apache.commons.io.FilenameUtils#getExtension(String)} but
+     * without creating the string, or -1 if the path is null or the file name has no dot.
+     */
+    public static int extensionIndex(String path) {
+        if (path == null) {
+            return -1;
+        }
+        for (int i = path.length() - 1; i >= 0; i--) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                return i + 1;
+            }
+            if (c == '/' || c == '\\') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the MIME type of a local file by its magic number, trying first the one
+     * expected from its extension, or null if the file can't be read or its type is
+     * not recognized. Every try reads the start of the file, so this is meant for
+     * files of unknown or suspicious type, not for every file.
+     */
+    public static String sniffMimeType(File file) {
+        String expected = getMimeTypeFromPath(file.getName());
+
+        for (int i = 0; i < MAGIC_FILTERS.length; i++) {
+            if (MAGIC_MIME_TYPES[i].equals(expected) && MAGIC_FILTERS[i].accept(file)) {
+                return expected;
+            }
+        }
+
+        for (int i = 0; i < MAGIC_FILTERS.length; i++) {
+            if (!MAGIC_MIME_TYPES[i].equals(expected) && MAGIC_FILTERS[i].accept(file)) {
+                return MAGIC_MIME_TYPES[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the category of a local file by its magic number, or by its extension if
+     * the type is not recognized.
+     */
+    public static Category sniffCategory(File file) {
+        String mimeType = sniffMimeType(file);
+        return mimeType != null ? category(mimeType) : getCategoryFromPath(file.getName());
+    }
+
+    private static int findPath(String path) {
+        int start = extensionIndex(path);
+        return start != -1 ? TABLE.find(path, start, path.length()) : -1;
+    }
+
+    private static Category category(String mimeType) {
+        if (mimeType.startsWith("audio/")) {
+            return Category.AUDIO;
+        } else if (mimeType.startsWith("video/")) {
+            return Category.VIDEO;
+        } else if (mimeType.startsWith("image/")) {
+            return Category.IMAGE;
+        } else if (mimeType.startsWith("text/")) {
+            return Category.TEXT;
+        } else if (mimeType.startsWith("application/")) {
+            return Category.APPLICATION;
+        } else {
+            return Category.OTHER;
+        }
+    }
+
+    /**
+     * The extensions in lower case, with linear probing in a table at most a quarter
+     * full, so that most lookups take a single probe. The hash is computed over the
+     * chars of the path, ignoring the ASCII case.
+     */
+    private static final class Table {
+
+        final String[] keys;
+        final String[] mimeTypes;
+        final Category[] categories;
+        final boolean[] streamable;
+        final int mask;
+
+        Table(Map<String, String> map, String[] streamableExtensions) {
+            int capacity = Integer.highestOneBit(map.size() * 4 - 1) << 1;
+
+            keys = new String[capacity];
+            mimeTypes = new String[capacity];
+            categories = new Category[capacity];
+            streamable = new boolean[capacity];
+            mask = capacity - 1;
+
+            for (Map.Entry<String, String> e : map.entrySet()) {
+                String key = e.getKey();
+                int i = hash(key, 0, key.length()) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                mimeTypes[i] = e.getValue();
+                categories[i] = category(e.getValue());
+            }
+
+            for (String ext : streamableExtensions) {
+                int i = find(ext, 0, ext.length());
+                if (i != -1) {
+                    streamable[i] = true;
+                }
+            }
+        }
+
+        int find(String s, int start, int end) {
+            if (start == end) {
+                return -1;
+            }
+            int length = end - start;
+            int i = hash(s, start, end) & mask;
+            String key;
+            while ((key = keys[i]) != null) {
+                if (key.length() == length && s.regionMatches(true, start, key, 0, length)) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int hash(String s, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                h = 31 * h + c;
+            }
+            return h ^ (h >>> 16);
         }
     }
 
@@ -399,7 +641,6 @@ public final class MimeDetector {
         map.put("mpe", "video/mpeg");
         map.put("xl", "application/excel");
         map.put("xpix", "application/x-vndls-xpix");
-        map.put("mpc", "application/x-project");
         map.put("xm", "audio/xm");
         map.put("mpp", "application/vndms-project");
         map.put("jxr", "image/vnd.ms-photo");
@@ -810,6 +1051,12 @@ public final class MimeDetector {
 
         map.put("webm", "video/webm");
 
+        map.put("opus", "audio/opus");
+        map.put("ape", "audio/x-ape");
+        map.put("wv", "audio/x-wavpack");
+        map.put("mpc", "audio/x-musepack");
+        map.put("alac", "audio/x-alac");
+
         return map;
     }
 }
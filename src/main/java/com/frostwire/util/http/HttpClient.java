@@ -57,6 +57,12 @@ public interface HttpClient {
 
     String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException;
 
+    /**
+     * Reads the response body without buffering it, passing every chunk of bytes to the
+     * listener's onData as it arrives. Call {@link #cancel()} to stop reading.
+     */
+    void stream(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException;
+
     byte[] getBytes(String url);
 
     byte[] getBytes(String url, int timeout);
@@ -148,10 +154,11 @@ public interface HttpClient {
         private final int responseCode;
 
         ResponseCodeNotSupportedException(int code) {
+            super("Response code not supported: " + code);
             responseCode = code;
         }
 
-        int getResponseCode() {
+        public int getResponseCode() {
             return responseCode;
         }
     }
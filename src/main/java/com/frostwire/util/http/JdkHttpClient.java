@@ -18,6 +18,7 @@
 package com.frostwire.util.http;
 
 import com.frostwire.logging.Logger;
+import org.apache.commons.io.output.NullOutputStream;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -64,6 +65,9 @@ public final class JdkHttpClient extends AbstractHttpClient {
             result = baos.toByteArray();
         } catch (Throwable e) {
             LOG.error("Error getting bytes from http body response: " + e.getMessage(), e);
+            if (getListener() != null) {
+                onError(e instanceof Exception ? (Exception) e : new Exception(e));
+            }
         } finally {
             closeQuietly(baos);
         }
@@ -93,6 +97,11 @@ public final class JdkHttpClient extends AbstractHttpClient {
         return result;
     }
 
+    @Override
+    public void stream(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        get(url, NullOutputStream.NULL_OUTPUT_STREAM, timeout, userAgent, referrer, cookie, -1, -1, customHeaders);
+    }
+
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
         FileOutputStream fos = null;
@@ -72,9 +72,17 @@ public class OKHTTPClient extends AbstractHttpClient {
         final OkHttpClient okHttpClient = newOkHttpClient();
         final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, referrer, cookies);
         try {
-            result = getSyncResponse(okHttpClient, builder).body().bytes();
+            Response response = getSyncResponse(okHttpClient, builder);
+            if (!response.isSuccessful()) {
+                response.body().close();
+                throw new ResponseCodeNotSupportedException(response.code());
+            }
+            result = response.body().bytes();
         } catch (Throwable e) {
             LOG.error("Error getting bytes from http body response: " + e.getMessage(), e);
+            if (getListener() != null) {
+                onError(e instanceof Exception ? (Exception) e : new Exception(e));
+            }
         }
         return result;
     }
@@ -95,6 +103,36 @@ public class OKHTTPClient extends AbstractHttpClient {
         return result;
     }
 
+    @Override
+    public void stream(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        canceled = false;
+        final OkHttpClient okHttpClient = newOkHttpClient();
+        final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, referrer, cookie);
+        addCustomHeaders(customHeaders, builder);
+        final Response response = getSyncResponse(okHttpClient, builder);
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new ResponseCodeNotSupportedException(response.code());
+        }
+        onHeaders(response.headers());
+        final InputStream in = response.body().byteStream();
+
+        try {
+            byte[] b = new byte[4096];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                onData(b, 0, n);
+            }
+        } finally {
+            closeQuietly(in);
+        }
+        if (canceled) {
+            onCancel();
+        } else {
+            onComplete();
+        }
+    }
+
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
         FileOutputStream fos;
@@ -0,0 +1,135 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.regex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class MatcherTest {
+
+    private static final String[] PATTERNS = {
+            "(?i)abc",
+            "(?i)ab+c",
+            "(?i)aB\\.c*",
+            "(?is)<a href=\"(.*?)\">",
+            "(?i)KEY(\\d+)",
+            "(?i)sS(x|y)",
+            "(?i)ab(?:c|d)e",
+            "(?i)(?s)xy.*?z",
+            "(?i)a\\]b",
+            "(?i)ab{0,2}c",
+            "(?i)ab?c",
+            "(?i)k s",
+            "(?i)k*",
+            "(?i)s(?:k)?",
+            "(?i)a|b",
+            "abc",
+            "(?s)<a href=\"(.*?)\">"
+    };
+
+    // includes the Kelvin sign and the long s, which re2j folds to k and s
+    private static final String ALPHABET = "abcABCkKsSxyzde<>\"=. Kſ]0123";
+
+    private static final int ITERATIONS = 3000;
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("abc", Pattern.compile("(?i)ABC").literalPrefix());
+        assertEquals("ab", Pattern.compile("(?i)ab+c").literalPrefix());
+        assertEquals("<a href=\"", Pattern.compile("(?is)<a href=\"(.*?)\">").literalPrefix());
+        assertEquals("a]b", Pattern.compile("(?i)a\\]b").literalPrefix());
+        assertNull(Pattern.compile("(?i)ab?c").literalPrefix());
+        assertNull(Pattern.compile("(?i)a|b").literalPrefix());
+    }
+
+    @Test
+    public void testFindSameAsRe2j() {
+        Random r = new Random(1);
+        for (int it = 0; it < ITERATIONS; it++) {
+            String s = randomInput(r);
+            for (String regex : PATTERNS) {
+                Pattern p = Pattern.compile(regex);
+                assertEquals(regex + " in " + s, re2jMatches(p, s), matches(p.matcher(s)));
+                assertEquals(regex + " in " + s, re2jMatches(p, s), matches(p.matcher(new StringBuilder(s))));
+            }
+        }
+    }
+
+    @Test
+    public void testFindFromSameAsRe2j() {
+        Random r = new Random(2);
+        for (int it = 0; it < ITERATIONS; it++) {
+            String s = randomInput(r);
+            int from = r.nextInt(s.length() + 1);
+            for (String regex : PATTERNS) {
+                Pattern p = Pattern.compile(regex);
+
+                com.google.re2j.Matcher expected = p.pattern().matcher(s);
+                Matcher m = p.matcher(s);
+                boolean found = expected.find(from);
+                assertEquals(regex + " in " + s + " from " + from, found, m.find(from));
+                if (found) {
+                    assertEquals(expected.start(), m.start());
+                    assertEquals(expected.end(), m.end());
+                    assertEquals(re2jRest(expected), matches(m));
+                }
+            }
+        }
+    }
+
+    private static String randomInput(Random r) {
+        StringBuilder sb = new StringBuilder();
+        int len = r.nextInt(200);
+        for (int i = 0; i < len; i++) {
+            sb.append(ALPHABET.charAt(r.nextInt(ALPHABET.length())));
+        }
+        if (r.nextBoolean()) {
+            sb.insert(r.nextInt(sb.length() + 1), "<a href=\"q\">");
+        }
+        return sb.toString();
+    }
+
+    private static List<String> re2jMatches(Pattern p, String s) {
+        return re2jRest(p.pattern().matcher(s));
+    }
+
+    private static List<String> re2jRest(com.google.re2j.Matcher m) {
+        List<String> list = new ArrayList<String>();
+        while (m.find()) {
+            list.add(m.start() + ":" + m.end());
+        }
+        return list;
+    }
+
+    private static List<String> matches(Matcher m) {
+        List<String> list = new ArrayList<String>();
+        while (m.find()) {
+            list.add(m.start() + ":" + m.end());
+        }
+        return list;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class DiskCrawlCacheTest {
+
+    // small enough to roll a new segment every few records
+    private static final int SEGMENT_SIZE = 150;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("crawl-cache", "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("Unable to create test directory: " + dir);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testRemoveCompactReopen() throws IOException {
+        DiskCrawlCache cache = new DiskCrawlCache(dir, 1024 * 1024, SEGMENT_SIZE);
+
+        // segment 0, mostly live, it's never compacted
+        put(cache, "k", 10);
+        put(cache, "a", 110);
+
+        // segment 1, the removal and stale records only, it's compacted
+        cache.remove("k");
+        cache.flush();
+        put(cache, "b", 40);
+        put(cache, "b", 40);
+
+        // segment 2
+        put(cache, "b", 40);
+
+        cache.close();
+
+        assertTrue(new File(dir, "crawl-0.seg").exists());
+        assertFalse("segment 1 should have been compacted", new File(dir, "crawl-1.seg").exists());
+
+        cache = new DiskCrawlCache(dir, 1024 * 1024, SEGMENT_SIZE);
+        try {
+            assertNull(cache.get("k"));
+            assertNotNull(cache.get("a"));
+            assertNotNull(cache.get("b"));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testPendingChangesAreVisible() throws IOException {
+        DiskCrawlCache cache = new DiskCrawlCache(dir, 1024 * 1024, SEGMENT_SIZE);
+        try {
+            cache.put("k", new byte[10]);
+            assertNotNull(cache.get("k"));
+            cache.remove("k");
+            assertNull(cache.get("k"));
+            cache.put("k", new byte[20]);
+            cache.flush();
+            assertEquals(20, cache.get("k").length);
+        } finally {
+            cache.close();
+        }
+    }
+
+    // one record at a time, so that the segments are laid out as expected
+    private static void put(DiskCrawlCache cache, String key, int size) {
+        cache.put(key, new byte[size]);
+        cache.flush();
+    }
+}